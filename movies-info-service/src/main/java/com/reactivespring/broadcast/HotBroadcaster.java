@@ -0,0 +1,133 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.BufferOverflowStrategy;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+ One subscription to the source shared by all the subscribers: the source is subscribed by the first subscriber
+ and keeps running, its values go through a replay sink so a new subscriber starts with the last replaySize ones.
+ Each subscriber has its own queue of queueSize values between the sink and itself, so the sink never waits
+ for a slow subscriber. When a queue is full the overflow policy applies to that subscriber only:
+ SHED_OLDEST drops its oldest queued value, DISCONNECT completes it (an SSE client reconnects and gets the replay).
+ subscribers() has the lag (the values queued) and the shed values of every subscriber, the metrics are
+ <name>.subscribers, <name>.lag.max, <name>.shed and <name>.disconnected.
+ */
+public class HotBroadcaster<T> {
+
+    public enum Overflow {
+        SHED_OLDEST, DISCONNECT
+    }
+
+    private final Flux<T> source;
+    private final Sinks.Many<T> sink;
+    private final int queueSize;
+    private final Overflow overflow;
+    private final Map<Long, SubscriberLag> subscribers = new ConcurrentHashMap<>();
+    private final AtomicLong subscriberIds = new AtomicLong();
+    private final Counter shed;
+    private final Counter disconnected;
+
+    private volatile Disposable connection;
+
+    public HotBroadcaster(String name, Flux<T> source, int replaySize, int queueSize, Overflow overflow, MeterRegistry meterRegistry) {
+        this.source = source;
+        this.sink = Sinks.many().replay().limit(replaySize);
+        this.queueSize = queueSize;
+        this.overflow = overflow;
+        this.shed = meterRegistry.counter(name + ".shed");
+        this.disconnected = meterRegistry.counter(name + ".disconnected");
+        Gauge.builder(name + ".subscribers", subscribers, Map::size).register(meterRegistry);
+        Gauge.builder(name + ".lag.max", this, HotBroadcaster::maxLag).register(meterRegistry);
+    }
+
+    public Flux<T> flux() {
+        return Flux.defer(() -> {
+            connect();
+            long id = subscriberIds.incrementAndGet();
+            SubscriberLag lag = new SubscriberLag();
+            subscribers.put(id, lag);
+            Flux<T> queued = sink.asFlux()
+                    .doOnNext(value -> lag.received.incrementAndGet());
+            queued = overflow == Overflow.SHED_OLDEST
+                    ? queued.onBackpressureBuffer(queueSize, value -> {
+                        lag.shed.incrementAndGet();
+                        shed.increment();
+                    }, BufferOverflowStrategy.DROP_OLDEST)
+                    : queued.onBackpressureBuffer(queueSize)
+                    .onErrorResume(Exceptions::isOverflow, e -> {
+                        disconnected.increment();
+                        return Flux.empty();
+                    });
+            return queued
+                    .doOnNext(value -> lag.delivered.incrementAndGet())
+                    .doFinally(signalType -> subscribers.remove(id));
+        });
+    }
+
+    // the source is subscribed once, by whoever gets here first
+    private void connect() {
+        if (connection == null) {
+            synchronized (this) {
+                if (connection == null) {
+                    connection = source.subscribe(sink::tryEmitNext, sink::tryEmitError, sink::tryEmitComplete);
+                }
+            }
+        }
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    public List<SubscriberStats> subscribers() {
+        return subscribers.entrySet().stream()
+                .map(entry -> new SubscriberStats(entry.getKey(), entry.getValue().lag(), entry.getValue().shed.get()))
+                .collect(Collectors.toList());
+    }
+
+    public long maxLag() {
+        return subscribers.values().stream().mapToLong(SubscriberLag::lag).max().orElse(0L);
+    }
+
+    public void dispose() {
+        Disposable current = connection;
+        if (current != null) {
+            current.dispose();
+        }
+    }
+
+    private static final class SubscriberLag {
+        final AtomicLong received = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong shed = new AtomicLong();
+
+        // queued for the subscriber, received but neither delivered nor shed
+        long lag() {
+            return Math.max(0L, received.get() - delivered.get() - shed.get());
+        }
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class SubscriberStats {
+        private long id;
+        private long lag;
+        private long shed;
+    }
+}
@@ -0,0 +1,119 @@
+package com.reactivespring.cache;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ Bloom filter of Strings, one bit per slot: keys can only be added.
+ mightContain is false only for keys that were never added, true can be a false positive.
+ The bits set are counted (a key added twice sets none the second time), the false positive rate and the number
+ of distinct keys are estimated from them.
+ Thread safe, the bits are set with CAS.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long size;
+    private final int hashes;
+    private final LongAdder bitsSet = new LongAdder();
+
+    private BloomFilter(long size, int hashes) {
+        this.size = size;
+        this.hashes = hashes;
+        this.words = new AtomicLongArray(Math.toIntExact((size + 63) / 64));
+    }
+
+    // the usual sizing: m = -n ln(p) / ln(2)^2 bits and k = m / n ln(2) hashes
+    public static BloomFilter create(long expectedInsertions, double fpp) {
+        if (expectedInsertions <= 0) {
+            throw new IllegalArgumentException("expectedInsertions must be positive but was " + expectedInsertions);
+        }
+        if (fpp <= 0.0 || fpp >= 1.0) {
+            throw new IllegalArgumentException("fpp must be between 0 and 1 but was " + fpp);
+        }
+        long size = Math.max(64, (long) Math.ceil(-expectedInsertions * Math.log(fpp) / (Math.log(2) * Math.log(2))));
+        int hashes = Math.max(1, (int) Math.round((double) size / expectedInsertions * Math.log(2)));
+        return new BloomFilter(size, hashes);
+    }
+
+    public void add(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            set(Math.floorMod(h1 + i * h2, size));
+        }
+    }
+
+    public boolean mightContain(String key) {
+        long h1 = hash(key);
+        long h2 = mix(h1 ^ 0x9E3779B97F4A7C15L) | 1L;
+        for (int i = 0; i < hashes; i++) {
+            long index = Math.floorMod(h1 + i * h2, size);
+            if ((words.get((int) (index >>> 6)) & (1L << index)) == 0L) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long bitsSet() {
+        return bitsSet.sum();
+    }
+
+    // the distinct keys added, from the bits set: -m/k ln(1 - X/m)
+    public long approximateCount() {
+        double set = Math.min(bitsSet(), size - 1);
+        return Math.round(-(double) size / hashes * Math.log(1.0 - set / size));
+    }
+
+    // the chance that all the k bits of a key never added are set: (X/m)^k
+    public double expectedFpp() {
+        return Math.pow((double) bitsSet() / size, hashes);
+    }
+
+    public long memoryBytes() {
+        return 8L * words.length();
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int hashes() {
+        return hashes;
+    }
+
+    private void set(long index) {
+        int word = (int) (index >>> 6);
+        long bit = 1L << index;
+        for (;;) {
+            long current = words.get(word);
+            if ((current & bit) != 0L) {
+                return;
+            }
+            if (words.compareAndSet(word, current, current | bit)) {
+                bitsSet.increment();
+                return;
+            }
+        }
+    }
+
+    // 64 bit FNV-1a over the chars, then the murmur3 finalizer to spread the bits
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
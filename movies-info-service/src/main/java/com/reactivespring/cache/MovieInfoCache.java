@@ -0,0 +1,81 @@
+package com.reactivespring.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.reactivespring.domain.MovieInfo;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/*
+ Read-through cache of the movie infos by id, in front of MovieInfoRepository.findById.
+ Caffeine keeps at most movieinfo.cache.maximum-size entries (W-TinyLFU eviction) for movieinfo.cache.expire-after-write.
+ The entries are futures, so a miss never blocks: the load is the repository Mono and concurrent misses
+ for the same id wait for the same load. Ids that are not found (or fail) are not cached.
+ The hit/miss/eviction stats are published as the cache.* metrics (name=movieInfo), see /actuator/metrics.
+ */
+@Component
+public class MovieInfoCache {
+
+    public static final String NAME = "movieInfo";
+
+    private final AsyncCache<String, MovieInfo> cache;
+
+    public MovieInfoCache(@Value("${movieinfo.cache.maximum-size:10000}") long maximumSize,
+                          @Value("${movieinfo.cache.expire-after-write:10m}") Duration expireAfterWrite,
+                          MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, NAME);
+    }
+
+    // loader only runs on a miss
+    public Mono<MovieInfo> get(String id, Function<String, Mono<MovieInfo>> loader) {
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture())
+                // every subscriber gets its own future, so cancelling one doesn't cancel the load the others wait for
+                .thenApply(Function.identity()));
+    }
+
+    // the cached movie info when it's loaded already, null otherwise (never loads)
+    public MovieInfo getIfPresent(String id) {
+        CompletableFuture<MovieInfo> future = cache.getIfPresent(id);
+        return future != null && future.isDone() && !future.isCompletedExceptionally() ? future.join() : null;
+    }
+
+    // after a write, the saved document replaces whatever is cached
+    public void put(MovieInfo movieInfo) {
+        cache.put(movieInfo.getMovieInfoId(), CompletableFuture.completedFuture(movieInfo));
+    }
+
+    public void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+
+    // for writes that bypass the service, eg. test data saved straight through the repository
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    public CacheStats stats() {
+        return cache.synchronous().stats();
+    }
+
+    public long estimatedSize() {
+        return cache.synchronous().estimatedSize();
+    }
+
+    // runs the pending evictions, the stats are up to date afterwards
+    public void cleanUp() {
+        cache.synchronous().cleanUp();
+    }
+}
@@ -0,0 +1,162 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/*
+ The ids of all the movie infos in a BloomFilter, so a lookup of an id that doesn't exist
+ (crawlers, stale links) can be answered without a query: mightContain(id) false means definitely absent.
+ It is built when the application is ready by streaming the ids from mongo, and built again every
+ movieinfo.id-filter.rebuild-interval. Until a build completes mightContain is always true and every lookup
+ goes to mongo as before.
+ It must never miss an id that exists, so it only ever adds: the service adds after a save, and with change streams
+ MovieInfoEvents adds the inserts of every writer (followed from before the ids are read). A plain Bloom filter
+ can't remove, a deleted id stays a false positive until the next build.
+ Without change streams the writes of other instances (or straight to the repository) can't be seen, so the filter
+ is only used when movieinfo.id-filter.single-writer says this instance is the only writer.
+ Sized by movieinfo.id-filter.expected-insertions and movieinfo.id-filter.fpp, metrics movieinfo.idfilter.*
+ (ids and expected.fpp are estimated from the bits set, an id added twice doesn't count twice).
+ */
+@Component
+@Slf4j
+public class MovieInfoIdFilter {
+
+    private final MovieInfoRepository movieInfoRepository;
+    private final MovieInfoEvents movieInfoEvents;
+    private final long expectedInsertions;
+    private final double fpp;
+    private final boolean singleWriter;
+    private final Duration rebuildInterval;
+
+    private volatile BloomFilter current;  // null until the first build completes
+    private volatile BloomFilter building; // also gets the adds while a build runs
+    private Disposable events; // guarded by this
+
+    private final Counter rejected;
+    private final Counter falsePositives;
+
+    public MovieInfoIdFilter(MovieInfoRepository movieInfoRepository, MovieInfoEvents movieInfoEvents,
+                             @Value("${movieinfo.id-filter.expected-insertions:1000000}") long expectedInsertions,
+                             @Value("${movieinfo.id-filter.fpp:0.01}") double fpp,
+                             @Value("${movieinfo.id-filter.single-writer:false}") boolean singleWriter,
+                             @Value("${movieinfo.id-filter.rebuild-interval:1h}") Duration rebuildInterval,
+                             MeterRegistry meterRegistry) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoEvents = movieInfoEvents;
+        this.expectedInsertions = expectedInsertions;
+        this.fpp = fpp;
+        this.singleWriter = singleWriter;
+        this.rebuildInterval = rebuildInterval;
+        this.rejected = meterRegistry.counter("movieinfo.idfilter.rejected");
+        this.falsePositives = meterRegistry.counter("movieinfo.idfilter.false.positives");
+        Gauge.builder("movieinfo.idfilter.expected.fpp", this, MovieInfoIdFilter::expectedFpp).register(meterRegistry);
+        Gauge.builder("movieinfo.idfilter.memory", this, MovieInfoIdFilter::memoryBytes).baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("movieinfo.idfilter.ids", this, MovieInfoIdFilter::approximateCount).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void build() {
+        Flux.interval(Duration.ZERO, rebuildInterval)
+                .concatMap(build -> rebuild()
+                        .onErrorResume(e -> {
+                            log.error("Building the movie info id filter failed, lookups go to mongo", e);
+                            return Mono.empty();
+                        }))
+                .subscribe();
+    }
+
+    public Mono<Void> rebuild() {
+        return movieInfoEvents.fromChangeStream().flatMap(changeStream -> {
+            if (!changeStream && !singleWriter) {
+                log.info("No change streams and not the only writer, the movie info id filter is off");
+                current = null;
+                return Mono.empty();
+            }
+            BloomFilter next = BloomFilter.create(expectedInsertions, fpp);
+            building = next;
+            Mono<Void> followed = changeStream ? movieInfoEvents.eventsFromNow().doOnNext(this::follow).then() : Mono.empty();
+            return followed.thenMany(movieInfoRepository.findAllIds())
+                    .doOnNext(movieInfo -> next.add(movieInfo.getMovieInfoId()))
+                    .then(Mono.fromRunnable(() -> {
+                        current = next;
+                        building = null;
+                        log.info("Movie info id filter built : {} ids, {} bytes", next.approximateCount(), next.memoryBytes());
+                    }));
+        });
+    }
+
+    // the inserts of every writer, the ones of this instance come twice (the service adds them first)
+    private synchronized void follow(Flux<MovieInfoEvent> eventsFromNow) {
+        Disposable previous = events;
+        events = eventsFromNow
+                .filter(event -> event.getType() != MovieInfoEvent.Type.DELETE)
+                .subscribe(event -> add(event.getMovieInfoId()), e -> {
+                    // the inserts of the other writers would be missed, off until the next build
+                    log.error("The movie info events failed, the id filter is off until it is built again", e);
+                    current = null;
+                });
+        if (previous != null) {
+            previous.dispose();
+        }
+    }
+
+    public boolean isReady() {
+        return current != null;
+    }
+
+    public boolean mightContain(String id) {
+        BloomFilter filter = current;
+        if (filter == null || filter.mightContain(id)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    public void add(String id) {
+        BloomFilter next = building;
+        if (next != null) {
+            next.add(id);
+        }
+        BloomFilter filter = current;
+        if (filter != null && filter != next) {
+            filter.add(id);
+        }
+    }
+
+    // the filter said maybe but the id was not there
+    public void recordFalsePositive() {
+        if (isReady()) {
+            falsePositives.increment();
+        }
+    }
+
+    public double expectedFpp() {
+        BloomFilter filter = current;
+        return filter == null ? 0.0 : filter.expectedFpp();
+    }
+
+    public long memoryBytes() {
+        BloomFilter filter = current;
+        return filter == null ? 0L : filter.memoryBytes();
+    }
+
+    public long approximateCount() {
+        BloomFilter filter = current;
+        return filter == null ? 0L : filter.approximateCount();
+    }
+}
@@ -0,0 +1,311 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ The whole catalog in memory (movieinfo.replica.enabled=true): once it is loaded MovieInfoService reads
+ getAllMovieInfo, getAllMovieInfoById, getAllMovieInfoByYear and the versions of the ETags from here, from mongo until then.
+ The movie infos are columns indexed by a slot (ids, names, years, release dates as epoch days, versions) and the cast
+ of each one is an int[] into a single table of cast names, so an actor in 2000 movies is one String.
+ year -> slots is a primitive int list per year.
+ It is loaded and kept current from MovieInfoEvents by MovieInfoSnapshot, an event never replaces a newer version.
+ If the events fail the reads go back to mongo and the replica is loaded again.
+ Freed slots are reused, cast names are never removed. A read builds a new MovieInfo (callers modify them).
+ Metrics movieinfo.replica.documents, movieinfo.replica.cast.names and movieinfo.replica.memory (estimated bytes)
+ */
+@Component
+@Slf4j
+public class MovieInfoReplica extends MovieInfoSnapshot {
+
+    private static final int NO_YEAR = Integer.MIN_VALUE;
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final long NO_VERSION = Long.MIN_VALUE;
+
+    // guarded by lock
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] ids = new String[0];
+    private String[] names = new String[0];
+    private int[] years = new int[0];
+    private int[] releaseDates = new int[0];
+    private long[] versions = new long[0];
+    private int[][] casts = new int[0][];
+    private int used; // slots below it have been used, the free ones are in freeSlots
+    private final IntList freeSlots = new IntList();
+    private final Map<String, Integer> castRefs = new HashMap<>();
+    private final List<String> castNames = new ArrayList<>();
+    private final Map<Integer, IntList> byYear = new HashMap<>();
+
+    public MovieInfoReplica(MovieInfoRepository movieInfoRepository, MovieInfoEvents movieInfoEvents,
+                            @Value("${movieinfo.replica.enabled:false}") boolean enabled,
+                            MeterRegistry meterRegistry) {
+        super(movieInfoRepository, movieInfoEvents, enabled, "movie info replica", "reads go to mongo");
+        Gauge.builder("movieinfo.replica.documents", this, MovieInfoReplica::size).register(meterRegistry);
+        Gauge.builder("movieinfo.replica.cast.names", this, MovieInfoReplica::castNameCount).register(meterRegistry);
+        Gauge.builder("movieinfo.replica.memory", this, MovieInfoReplica::memoryBytes).baseUnit("bytes").register(meterRegistry);
+    }
+
+    public MovieInfo get(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            return slot == null ? null : read(slot);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<MovieInfo> getByYear(int year) {
+        lock.readLock().lock();
+        try {
+            IntList yearSlots = byYear.get(year);
+            if (yearSlots == null) {
+                return Collections.emptyList();
+            }
+            List<MovieInfo> movieInfos = new ArrayList<>(yearSlots.size);
+            for (int i = 0; i < yearSlots.size; i++) {
+                movieInfos.add(read(yearSlots.values[i]));
+            }
+            return movieInfos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // null for an unknown id, 0 for a movie info without a version (like the ETags)
+    public Long getVersion(String id) {
+        lock.readLock().lock();
+        try {
+            Integer slot = slots.get(id);
+            return slot == null ? null : versions[slot] == NO_VERSION ? 0L : versions[slot];
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // the ids and versions of the movie infos of the year (all of them when it's null), the other fields are null
+    public List<MovieInfo> getVersions(Integer year) {
+        lock.readLock().lock();
+        try {
+            List<MovieInfo> movieInfos = new ArrayList<>();
+            if (year == null) {
+                for (int slot = 0; slot < used; slot++) {
+                    if (ids[slot] != null) {
+                        movieInfos.add(readVersion(slot));
+                    }
+                }
+                return movieInfos;
+            }
+            IntList yearSlots = byYear.get(year);
+            for (int i = 0; yearSlots != null && i < yearSlots.size; i++) {
+                movieInfos.add(readVersion(yearSlots.values[i]));
+            }
+            return movieInfos;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // one slot at a time as they are requested, the writes in between are seen or not depending on the slot
+    public Flux<MovieInfo> getAll() {
+        return Flux.defer(() -> {
+            int upTo = readLocked(() -> used);
+            return Flux.range(0, upTo)
+                    .handle((slot, sink) -> {
+                        MovieInfo movieInfo = readLocked(() -> ids.length > slot && ids[slot] != null ? read(slot) : null);
+                        if (movieInfo != null) {
+                            sink.next(movieInfo);
+                        }
+                    });
+        });
+    }
+
+    public int size() {
+        return readLocked(slots::size);
+    }
+
+    public int castNameCount() {
+        return readLocked(castNames::size);
+    }
+
+    /*
+     An estimate with compressed oops and compact (latin1) strings: the columns, the strings, the cast int[]s,
+     the slot and cast name hash maps (about 48 bytes an entry with its Integer) and the year lists.
+     */
+    public long memoryBytes() {
+        return readLocked(() -> {
+            long bytes = 5L * 16 + (long) ids.length * (4 + 4 + 4 + 4 + 8 + 4); // the column arrays
+            for (int slot = 0; slot < used; slot++) {
+                if (ids[slot] != null) {
+                    bytes += stringBytes(ids[slot]) + stringBytes(names[slot]);
+                    bytes += casts[slot] == null ? 0 : align(16 + 4L * casts[slot].length);
+                }
+            }
+            bytes += 48L * slots.size() + 4L * Integer.highestOneBit(Math.max(1, slots.size())) * 2;
+            for (String castName : castNames) {
+                bytes += stringBytes(castName) + 48 + 4;
+            }
+            for (IntList yearSlots : byYear.values()) {
+                bytes += 48 + align(16 + 4L * yearSlots.values.length);
+            }
+            return bytes;
+        });
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 24 + align(16 + value.length());
+    }
+
+    private static long align(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+
+    @Override
+    protected void loaded(long millis) {
+        log.info("Movie info replica loaded : {} movie infos, {} cast names, about {} bytes, in {}ms",
+                size(), castNameCount(), memoryBytes(), millis);
+    }
+
+    @Override
+    protected void put(MovieInfo movieInfo) {
+        String id = movieInfo.getMovieInfoId();
+        if (id == null) {
+            return;
+        }
+        long version = movieInfo.getVersion() == null ? 0L : movieInfo.getVersion();
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = freeSlots.size > 0 ? freeSlots.removeLast() : used++;
+            ensureCapacity(slot + 1);
+            slots.put(id, slot);
+        } else if (versions[slot] != NO_VERSION && versions[slot] > version) {
+            return; // an older version than the one already here (the load after an update)
+        } else {
+            byYear.get(years[slot]).remove(slot);
+        }
+        int year = movieInfo.getYear() == null ? NO_YEAR : movieInfo.getYear();
+        ids[slot] = id;
+        names[slot] = movieInfo.getName();
+        years[slot] = year;
+        releaseDates[slot] = movieInfo.getRelease_date() == null ? NO_DATE : (int) movieInfo.getRelease_date().toEpochDay();
+        versions[slot] = movieInfo.getVersion() == null ? NO_VERSION : version;
+        casts[slot] = castRefs(movieInfo.getCast());
+        byYear.computeIfAbsent(year, key -> new IntList()).add(slot);
+    }
+
+    @Override
+    protected void delete(String id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            byYear.get(years[slot]).remove(slot);
+            ids[slot] = null;
+            names[slot] = null;
+            casts[slot] = null;
+            freeSlots.add(slot);
+        }
+    }
+
+    private int[] castRefs(List<String> cast) {
+        if (cast == null) {
+            return null;
+        }
+        int[] refs = new int[cast.size()];
+        for (int i = 0; i < refs.length; i++) {
+            String castName = cast.get(i);
+            refs[i] = castName == null ? -1 : castRefs.computeIfAbsent(castName, name -> {
+                castNames.add(name);
+                return castNames.size() - 1;
+            });
+        }
+        return refs;
+    }
+
+    // guarded by lock (read or write)
+    private MovieInfo read(int slot) {
+        List<String> cast = null;
+        if (casts[slot] != null) {
+            cast = new ArrayList<>(casts[slot].length);
+            for (int ref : casts[slot]) {
+                cast.add(ref < 0 ? null : castNames.get(ref));
+            }
+        }
+        return new MovieInfo(ids[slot], names[slot], years[slot] == NO_YEAR ? null : years[slot], cast,
+                releaseDates[slot] == NO_DATE ? null : LocalDate.ofEpochDay(releaseDates[slot]),
+                versions[slot] == NO_VERSION ? null : versions[slot]);
+    }
+
+    // guarded by lock (read or write)
+    private MovieInfo readVersion(int slot) {
+        return new MovieInfo(ids[slot], null, null, null, null, versions[slot] == NO_VERSION ? null : versions[slot]);
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, Math.max(16, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, grown);
+        names = Arrays.copyOf(names, grown);
+        years = Arrays.copyOf(years, grown);
+        releaseDates = Arrays.copyOf(releaseDates, grown);
+        versions = Arrays.copyOf(versions, grown);
+        casts = Arrays.copyOf(casts, grown);
+    }
+
+    @Override
+    protected void clear() {
+        slots.clear();
+        ids = new String[0];
+        names = new String[0];
+        years = new int[0];
+        releaseDates = new int[0];
+        versions = new long[0];
+        casts = new int[0][];
+        used = 0;
+        freeSlots.size = 0;
+        castRefs.clear();
+        castNames.clear();
+        byYear.clear();
+    }
+
+    // a growable int[], remove swaps the last value in (the order of a year isn't kept)
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/*
+ The loading of the whole collection in memory and keeping it current from MovieInfoEvents (the change stream, or the
+ writes of this instance), for MovieInfoReplica and MovieInfoSearchIndex: the events are followed from before loading,
+ a delete during the load isn't brought back by the load and if the events fail it isn't ready until it's loaded again.
+ put and delete are called with the write lock held, put has to ignore an older version than the one it has.
+ */
+@Slf4j
+public abstract class MovieInfoSnapshot {
+
+    private static final Duration RELOAD_DELAY = Duration.ofSeconds(5);
+
+    private final MovieInfoRepository movieInfoRepository;
+    private final MovieInfoEvents movieInfoEvents;
+    private final boolean enabled;
+    private final String name; // for the logs, "movie info replica"
+    private final String fallback; // for the logs, "reads go to mongo"
+
+    protected final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private Set<String> deletedWhileLoading; // guarded by lock, not null while loading
+
+    private volatile boolean ready;
+    private Disposable events;
+
+    protected MovieInfoSnapshot(MovieInfoRepository movieInfoRepository, MovieInfoEvents movieInfoEvents, boolean enabled,
+                                String name, String fallback) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoEvents = movieInfoEvents;
+        this.enabled = enabled;
+        this.name = name;
+        this.fallback = fallback;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (enabled) {
+            load().subscribe(null, e -> log.error("Loading the {} failed, {}", name, fallback, e));
+        }
+    }
+
+    // the reads only come here once it's true
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Mono<Void> load() {
+        return Mono.defer(() -> {
+            ready = false;
+            writeLocked(() -> {
+                clear();
+                deletedWhileLoading = new HashSet<>();
+            });
+            long start = System.nanoTime();
+            // following the events from before the read of the collection, a write in between is in one or the other
+            return movieInfoEvents.eventsFromNow()
+                    .flatMap(eventsFromNow -> {
+                        synchronized (this) {
+                            if (events != null) {
+                                events.dispose();
+                            }
+                            events = eventsFromNow.subscribe(this::apply, this::eventsFailed);
+                        }
+                        return movieInfoRepository.findAll()
+                                .doOnNext(movieInfo -> writeLocked(() -> {
+                                    if (!deletedWhileLoading.contains(movieInfo.getMovieInfoId())) {
+                                        put(movieInfo);
+                                    }
+                                }))
+                                .then(Mono.fromRunnable(() -> {
+                                    writeLocked(() -> deletedWhileLoading = null);
+                                    ready = true;
+                                    loaded((System.nanoTime() - start) / 1_000_000);
+                                }));
+                    });
+        });
+    }
+
+    private void eventsFailed(Throwable e) {
+        ready = false;
+        log.error("The movie info events failed, {} until the {} is loaded again", fallback, name, e);
+        Mono.delay(RELOAD_DELAY)
+                .then(load())
+                .subscribe(null, reload -> log.error("Loading the {} failed, {}", name, fallback, reload));
+    }
+
+    public void apply(MovieInfoEvent event) {
+        if (event.getType() == MovieInfoEvent.Type.DELETE) {
+            String id = event.getMovieInfoId();
+            writeLocked(() -> {
+                if (deletedWhileLoading != null) {
+                    deletedWhileLoading.add(id);
+                }
+                delete(id);
+            });
+        } else if (event.getMovieInfo() != null) {
+            writeLocked(() -> put(event.getMovieInfo()));
+        }
+    }
+
+    // guarded by lock (write)
+    protected abstract void clear();
+
+    // guarded by lock (write)
+    protected abstract void put(MovieInfo movieInfo);
+
+    // guarded by lock (write)
+    protected abstract void delete(String id);
+
+    // once the load is done, for the log
+    protected abstract void loaded(long millis);
+
+    protected void writeLocked(Runnable write) {
+        lock.writeLock().lock();
+        try {
+            write.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    protected <T> T readLocked(Supplier<T> read) {
+        lock.readLock().lock();
+        try {
+            return read.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
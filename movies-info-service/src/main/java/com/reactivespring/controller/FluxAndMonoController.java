@@ -1,17 +1,39 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.broadcast.HotBroadcaster;
+import com.reactivespring.tracing.SignalTracer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RestController;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-import java.awt.PageAttributes;
+import javax.annotation.PreDestroy;
 import java.time.Duration;
+import java.util.List;
 
 @RestController
 public class FluxAndMonoController {
 
+    private HotBroadcaster<Long> ticks;
+
+    /*
+     All the /stream clients share one Flux.interval, a new client gets the last
+     stream.replay-size ticks first. A client that doesn't keep up has its own stream.queue-size ticks queued,
+     then stream.overflow: shed-oldest drops its oldest ticks, disconnect ends its stream.
+     The trace is on each client's stream: the interval is subscribed to once, so a trace on it would keep
+     whatever on/off the tracer had when the first client came.
+     */
+    public FluxAndMonoController(@Value("${stream.interval:1s}") Duration interval,
+                                 @Value("${stream.replay-size:16}") int replaySize,
+                                 @Value("${stream.queue-size:64}") int queueSize,
+                                 @Value("${stream.overflow:shed-oldest}") HotBroadcaster.Overflow overflow,
+                                 MeterRegistry meterRegistry) {
+        this.ticks = new HotBroadcaster<>("stream", Flux.interval(interval), replaySize, queueSize, overflow, meterRegistry);
+    }
+
     @GetMapping("/flux")
     public Flux<Integer> flux() {
         return Flux.just(1, 2, 3);
@@ -24,6 +46,18 @@ public class FluxAndMonoController {
 
     @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
     public Flux<Long> stream() {
-        return Flux.interval(Duration.ofSeconds(1)).log();
+        return ticks.flux()
+                .transform(SignalTracer.global().traceFlux("stream"));
+    }
+
+    // the connected /stream clients, with the ticks queued for each of them (lag) and the ones shed
+    @GetMapping("/stream/subscribers")
+    public List<HotBroadcaster.SubscriberStats> streamSubscribers() {
+        return ticks.subscribers();
+    }
+
+    @PreDestroy
+    public void stopStream() {
+        ticks.dispose();
     }
 }
@@ -0,0 +1,84 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+
+import java.util.List;
+
+/*
+ Strong ETags of the movie info representations, made from the versions only so they can be checked without
+ reading the documents: one movie info is "<version>", a list is "<count>-<hash of the ids and versions>".
+ The hash of a list doesn't depend on the order, the documents of a year can come back in any order.
+ */
+final class MovieInfoETags {
+
+    private MovieInfoETags() {
+    }
+
+    static String of(MovieInfo movieInfo) {
+        return of(version(movieInfo));
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    static String ofList(List<MovieInfo> movieInfos) {
+        long hash = 0;
+        for (MovieInfo movieInfo : movieInfos) {
+            hash += mix(fnv1a(movieInfo.getMovieInfoId()) ^ version(movieInfo) * 0x9E3779B97F4A7C15L);
+        }
+        return "\"" + movieInfos.size() + "-" + Long.toHexString(hash) + "\"";
+    }
+
+    // If-None-Match: * or any of the listed ETags (a weak comparison, W/ is ignored)
+    static boolean noneMatch(String ifNoneMatch, String etag) {
+        for (String tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || (tag.startsWith("W/") ? tag.substring(2) : tag).equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     If-Match: the version of a single strong ETag of a movie info, null for * (any version).
+     Anything else can't match a movie info and gives -1, a version no movie info has.
+     */
+    static Long ifMatchVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.equals("*")) {
+            return null;
+        }
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(tag.substring(1, tag.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static long version(MovieInfo movieInfo) {
+        return movieInfo.getVersion() == null ? 0L : movieInfo.getVersion();
+    }
+
+    private static long fnv1a(String id) {
+        long hash = 0xcbf29ce484222325L;
+        if (id == null) {
+            return hash;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // murmur3 fmix64
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
@@ -0,0 +1,52 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.service.MovieInfoEvents;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class MovieInfoEventController {
+
+    private MovieInfoEvents movieInfoEvents;
+    private Duration heartbeat;
+
+    public MovieInfoEventController(MovieInfoEvents movieInfoEvents,
+                                    @Value("${movieinfo.events.heartbeat:15s}") Duration heartbeat) {
+        this.movieInfoEvents = movieInfoEvents;
+        this.heartbeat = heartbeat;
+    }
+
+    /*
+     The inserts, updates and deletes of the movie infos as server sent events, the id of an event is its token.
+     An EventSource sends the id of the last event it got as Last-Event-ID when it reconnects,
+     other clients can pass it as resumeAfter; without either the events start from now.
+     A comment every heartbeat keeps a quiet connection from being closed by the proxies in between.
+     */
+    @GetMapping(value = "/movieinfos/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<MovieInfoEvent>> movieInfoEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                                                 @RequestParam(value = "resumeAfter", required = false) String resumeAfter) {
+        String resumeToken = lastEventId != null ? lastEventId : resumeAfter;
+        log.info("Movie info events after : {}", resumeToken);
+        return movieInfoEvents.events(resumeToken)
+                .map(event -> ServerSentEvent.builder(event)
+                        .id(event.getToken())
+                        .event(event.getType().name())
+                        .build())
+                .publish(events -> Flux.merge(events, Flux.interval(heartbeat)
+                        .map(tick -> ServerSentEvent.<MovieInfoEvent>builder().comment("heartbeat").build())
+                        .takeUntilOther(events.ignoreElements())));
+    }
+}
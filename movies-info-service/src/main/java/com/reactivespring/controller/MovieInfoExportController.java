@@ -0,0 +1,32 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.service.MovieInfoExportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class MovieInfoExportController {
+
+    private MovieInfoExportService movieInfoExportService;
+
+    public MovieInfoExportController(MovieInfoExportService movieInfoExportService) {
+        this.movieInfoExportService = movieInfoExportService;
+    }
+
+    // all the movie infos as NDJSON, always gzipped (curl --compressed or gunzip on the saved body)
+    @GetMapping("/movieinfos/export")
+    public Mono<Void> exportMovieInfos(ServerHttpResponse response) {
+        log.info("Exporting movie infos");
+        response.getHeaders().setContentType(MediaType.APPLICATION_NDJSON);
+        response.getHeaders().set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.writeWith(movieInfoExportService.export(response.bufferFactory()));
+    }
+}
@@ -0,0 +1,31 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.service.MovieInfoImportService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class MovieInfoImportController {
+
+    private MovieInfoImportService movieInfoImportService;
+
+    public MovieInfoImportController(MovieInfoImportService movieInfoImportService) {
+        this.movieInfoImportService = movieInfoImportService;
+    }
+
+    // the body is one movie info per line, it is decoded line by line and the result of each batch is written back when it's done
+    @PostMapping(value = "/movieinfos/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfoImportResult> importMovieInfos(@RequestBody Flux<String> lines) {
+        log.info("Importing movie infos");
+        return movieInfoImportService.importMovieInfos(lines);
+    }
+}
@@ -0,0 +1,34 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.service.MovieInfoSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+
+@RestController
+@RequestMapping("/v1")
+@Slf4j
+public class MovieInfoSearchController {
+
+    private MovieInfoSearchService movieInfoSearchService;
+    private int maxLimit;
+
+    public MovieInfoSearchController(MovieInfoSearchService movieInfoSearchService,
+                                     @Value("${movieinfo.search.max-limit:100}") int maxLimit) {
+        this.movieInfoSearchService = movieInfoSearchService;
+        this.maxLimit = maxLimit;
+    }
+
+    // the best movie infos for the words of q in their name or cast, prefixes and typos too, best first
+    @GetMapping("/movieinfos/search")
+    public Flux<MovieInfo> searchMovieInfos(@RequestParam("q") String q,
+                                            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        log.info("Search : {}, limit : {}", q, limit);
+        return movieInfoSearchService.search(q, Math.max(1, Math.min(limit, maxLimit)));
+    }
+}
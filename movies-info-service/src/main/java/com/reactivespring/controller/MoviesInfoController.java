@@ -1,15 +1,27 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoUpdate;
+import com.reactivespring.exception.InvalidFieldsException;
+import com.reactivespring.exception.MovieInfoConflictException;
+import com.reactivespring.exception.MovieInfoPreconditionFailedException;
+import com.reactivespring.service.MovieInfoFields;
 import com.reactivespring.service.MovieInfoService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/v1")
@@ -17,25 +29,108 @@ import javax.validation.Valid;
 public class MoviesInfoController {
 
     private MovieInfoService movieInfoService;
+    private int maxPageSize;
+    private int streamBatchSize;
 
-    public MoviesInfoController(MovieInfoService movieInfoService) {
+    public MoviesInfoController(MovieInfoService movieInfoService,
+                                @Value("${movieinfo.page.max-size:100}") int maxPageSize,
+                                @Value("${movieinfo.stream.batch-size:256}") int streamBatchSize) {
         this.movieInfoService = movieInfoService;
+        this.maxPageSize = maxPageSize;
+        this.streamBatchSize = streamBatchSize;
     }
 
+    // the JSON array is built in memory anyway, the ETag of the list comes with it;
+    // fields=name,year only reads and writes those fields, the ETag is still the one of the whole list
     @GetMapping("/movieinfos")
-    @ResponseStatus(HttpStatus.OK)
-    public Flux<MovieInfo> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year) {
-        log.info("Year : {}", year);
-        if(year != null) {
-            return movieInfoService.getAllMovieInfoByYear(year);
+    public Mono<ResponseEntity<List<?>>> getAllMovieInfos(@RequestParam(value = "year", required = false) Integer year,
+                                                          @RequestParam(value = "fields", required = false) String fields,
+                                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        log.info("Year : {}, fields : {}", year, fields);
+        Set<String> projection = MovieInfoFields.parse(fields);
+        Mono<ResponseEntity<List<?>>> movieInfos = Mono.defer(() -> {
+            Flux<MovieInfo> movieInfoFlux = projection != null
+                    ? movieInfoService.getMovieInfoFields(year, projection)
+                    : year != null
+                    ? movieInfoService.getAllMovieInfoByYear(year)
+                    : this.movieInfoService.getAllMovieInfo();
+            return movieInfoFlux.collectList()
+                    .map(list -> ResponseEntity.ok().eTag(MovieInfoETags.ofList(list))
+                            .<List<?>>body(projection == null ? list : MovieInfoFields.select(list, projection)));
+        });
+        if (ifNoneMatch == null) {
+            return movieInfos;
         }
-        return this.movieInfoService.getAllMovieInfo();
+        // the ids and versions are enough to know the client has this list already
+        return movieInfoService.getMovieInfoVersions(year)
+                .collectList()
+                .flatMap(versions -> {
+                    String eTag = MovieInfoETags.ofList(versions);
+                    return MovieInfoETags.noneMatch(ifNoneMatch, eTag) ? Mono.just(MoviesInfoController.<List<?>>notModified(eTag)) : movieInfos;
+                });
     }
 
+    /*
+     Accept: application/x-ndjson writes each movie info as soon as it is read instead of one JSON array at the end.
+     The response is written as the client reads it and the mongo cursor is asked for at most streamBatchSize
+     documents at a time (the driver uses the demand as the batch size), a disconnect cancels and closes the cursor.
+     */
+    @GetMapping(value = "/movieinfos", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<MovieInfo> streamMovieInfos(@RequestParam(value = "year", required = false) Integer year) {
+        log.info("Streaming year : {}", year);
+        return movieInfoService.streamMovieInfos(year)
+                .limitRate(streamBatchSize)
+                .doOnCancel(() -> log.info("Streaming year : {} cancelled", year));
+    }
+
+    // with size the movie infos come one page at a time, the next page is asked with the nextCursor of this one
+    @GetMapping(value = "/movieinfos", params = "size")
+    public Mono<MovieInfoPage> getMovieInfoPage(@RequestParam(value = "year", required = false) Integer year,
+                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                @RequestParam("size") int size,
+                                                @RequestParam(value = "fields", required = false) String fields) {
+        log.info("Year : {}, cursor : {}, size : {}", year, cursor, size);
+        if (fields != null) {
+            throw new InvalidFieldsException("fields is not supported with size");
+        }
+        return this.movieInfoService.getMovieInfoPage(year, cursor, Math.max(1, Math.min(size, maxPageSize)));
+    }
+
+    // with If-None-Match the version is checked first, a client that has it already gets a 304 without the document being read
     @GetMapping("/movieinfos/{id}")
-    public Mono<ResponseEntity<MovieInfo>> getAllMovieInfoById(@PathVariable("id") String id) {
-        return this.movieInfoService.getAllMovieInfoById(id)
-                .map(ResponseEntity.ok()::body)
+    public Mono<ResponseEntity<MovieInfo>> getAllMovieInfoById(@PathVariable("id") String id,
+                                                               @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Mono<ResponseEntity<MovieInfo>> movieInfo = Mono.defer(() -> this.movieInfoService.getAllMovieInfoById(id))
+                .map(MoviesInfoController::ok)
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+        if (ifNoneMatch == null) {
+            return movieInfo;
+        }
+        return this.movieInfoService.getMovieInfoVersion(id)
+                .flatMap(version -> {
+                    String eTag = MovieInfoETags.of(version);
+                    return MovieInfoETags.noneMatch(ifNoneMatch, eTag) ? Mono.just(MoviesInfoController.<MovieInfo>notModified(eTag)) : movieInfo;
+                })
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+    }
+
+    // a cached movie info is projected here, otherwise only the fields are read from mongo
+    @GetMapping(value = "/movieinfos/{id}", params = "fields")
+    public Mono<ResponseEntity<Map<String, Object>>> getMovieInfoFieldsById(@PathVariable("id") String id,
+                                                                           @RequestParam("fields") String fields,
+                                                                           @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        Set<String> projection = MovieInfoFields.parse(fields);
+        Mono<ResponseEntity<Map<String, Object>>> movieInfo = Mono.defer(() -> this.movieInfoService.getMovieInfoFieldsById(id, projection))
+                .map(found -> ResponseEntity.ok().eTag(MovieInfoETags.of(found)).body(MovieInfoFields.select(found, projection)))
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
+        if (ifNoneMatch == null) {
+            return movieInfo;
+        }
+        return this.movieInfoService.getMovieInfoVersion(id)
+                .flatMap(version -> {
+                    String eTag = MovieInfoETags.of(version);
+                    return MovieInfoETags.noneMatch(ifNoneMatch, eTag) ? Mono.just(MoviesInfoController.<Map<String, Object>>notModified(eTag)) : movieInfo;
+                })
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
@@ -45,16 +140,50 @@ public class MoviesInfoController {
         return this.movieInfoService.addMovieInfo(movieInfo);
     }
 
+    // with If-Match it is only updated when it's still at that ETag, 412 otherwise
     @PutMapping("/movieinfos/{id}")
-    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody @Valid MovieInfo updatedMovieInfo, @PathVariable("id") String id) {
-        return this.movieInfoService.updateMovieInfo(updatedMovieInfo, id)
-                .map(ResponseEntity.ok()::body)
+    public Mono<ResponseEntity<MovieInfo>> updateMovieInfo(@RequestBody @Valid MovieInfo updatedMovieInfo, @PathVariable("id") String id,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : MovieInfoETags.ifMatchVersion(ifMatch);
+        Mono<MovieInfo> updated = expectedVersion == null
+                ? this.movieInfoService.updateMovieInfo(updatedMovieInfo, id)
+                : this.movieInfoService.updateMovieInfo(updatedMovieInfo, id, expectedVersion);
+        return updated
+                .map(MoviesInfoController::ok)
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
+                .onErrorMap(MovieInfoConflictException.class, MoviesInfoController::preconditionFailed);
+    }
+
+    // only the fields in the body change, with a version in the body it answers 409 when the movie info changed since
+    @PatchMapping("/movieinfos/{id}")
+    public Mono<ResponseEntity<MovieInfo>> patchMovieInfo(@RequestBody @Valid MovieInfoUpdate update, @PathVariable("id") String id) {
+        return this.movieInfoService.patchMovieInfo(update, id)
+                .map(MoviesInfoController::ok)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()));
     }
 
+    // with If-Match it is only deleted when it's still at that ETag, 412 otherwise (also when it's gone already)
     @DeleteMapping("/movieinfos/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    public Mono<Void> deleteMovieInfo(@PathVariable("id") String id) {
-        return this.movieInfoService.deleteMovieInfo(id);
+    public Mono<Void> deleteMovieInfo(@PathVariable("id") String id,
+                                      @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Long expectedVersion = ifMatch == null ? null : MovieInfoETags.ifMatchVersion(ifMatch);
+        if (expectedVersion == null) {
+            return this.movieInfoService.deleteMovieInfo(id);
+        }
+        return this.movieInfoService.deleteMovieInfo(id, expectedVersion)
+                .onErrorMap(MovieInfoConflictException.class, MoviesInfoController::preconditionFailed);
+    }
+
+    private static ResponseEntity<MovieInfo> ok(MovieInfo movieInfo) {
+        return ResponseEntity.ok().eTag(MovieInfoETags.of(movieInfo)).body(movieInfo);
+    }
+
+    private static <T> ResponseEntity<T> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+    }
+
+    private static Throwable preconditionFailed(MovieInfoConflictException e) {
+        return new MovieInfoPreconditionFailedException(e.getMessage());
     }
 }
@@ -1,9 +1,13 @@
 package com.reactivespring.domain;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.validation.constraints.*;
 import java.time.LocalDate;
@@ -12,14 +16,26 @@ import java.util.List;
 @Data
 @AllArgsConstructor
 @NoArgsConstructor
+@Document
+// GET /v1/movieinfos?year=..&size=.. pages, and findByYear (year is its prefix, no index on year alone)
+@CompoundIndex(name = "year_id", def = "{'year': 1, '_id': 1}")
 public class MovieInfo {
     @Id
     private String movieInfoId;
     @NotBlank(message = "movieInfo.name must be present")
+    @Indexed // findByName
     private String name;
     @NotNull
     @Positive(message = "movieInfo.year must be positive value")
     private Integer year;
+    @Indexed // multikey, a movie info by any of its cast
     private List<@NotBlank(message = "movieInfo.cast must be present") String> cast;
     private LocalDate release_date;
+    // +1 on every update, missing (null) on the documents written before it and counted as 0
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long version;
+
+    public MovieInfo(String movieInfoId, String name, Integer year, List<String> cast, LocalDate release_date) {
+        this(movieInfoId, name, year, cast, release_date, null);
+    }
 }
@@ -0,0 +1,21 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// an insert, update or delete of a movie info, a client resumes after the token (the SSE id) when it reconnects
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoEvent {
+
+    public enum Type {
+        INSERT, UPDATE, DELETE
+    }
+
+    private String token;
+    private Type type;
+    private String movieInfoId;
+    private MovieInfo movieInfo; // the movie info after the write, null for a delete
+}
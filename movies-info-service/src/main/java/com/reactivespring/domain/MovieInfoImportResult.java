@@ -0,0 +1,27 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// one batch of POST /v1/movieinfos/import, the records that were not inserted are in failures with their line in the body
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoImportResult {
+    private long batch;
+    private int received;
+    private int inserted;
+    private List<Failure> failures;
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class Failure {
+        private long line;
+        private String movieInfoId; // null when the line could not be read
+        private String reason;
+    }
+}
@@ -0,0 +1,16 @@
+package com.reactivespring.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// one page of GET /v1/movieinfos?size=..., nextCursor is null on the last page
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoPage {
+    private List<MovieInfo> movieInfos;
+    private String nextCursor;
+}
@@ -0,0 +1,35 @@
+package com.reactivespring.domain;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import javax.validation.constraints.AssertTrue;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Pattern;
+import javax.validation.constraints.Positive;
+import java.time.LocalDate;
+import java.util.List;
+
+// the body of PATCH /v1/movieinfos/{id}: only the fields that are not null are changed
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MovieInfoUpdate {
+    @Pattern(regexp = "(?s).*\\S.*", message = "movieInfo.name must be present")
+    private String name;
+    @Positive(message = "movieInfo.year must be positive value")
+    private Integer year;
+    private List<@NotNull(message = "movieInfo.cast must be present") @Pattern(regexp = "(?s).*\\S.*", message = "movieInfo.cast must be present") String> cast;
+    private LocalDate release_date;
+    // when set the update is only done if the movie info is still at this version
+    private Long version;
+
+    // a body without any field to change (only a version, or {}) is a 400 rather than a write that changes nothing
+    @JsonIgnore
+    @AssertTrue(message = "movieInfo update must have a name, year, cast or release_date")
+    public boolean isChangingAField() {
+        return name != null || year != null || cast != null || release_date != null;
+    }
+}
@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class InvalidSearchException extends RuntimeException {
+
+    public InvalidSearchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class MovieInfoConflictException extends RuntimeException {
+
+    public MovieInfoConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.reactivespring.exception;
+
+public class MovieInfoPreconditionFailedException extends RuntimeException {
+
+    public MovieInfoPreconditionFailedException(String message) {
+        super(message);
+    }
+}
@@ -1,5 +1,10 @@
 package com.reactivespring.exceptionhandler;
 
+import com.reactivespring.exception.InvalidCursorException;
+import com.reactivespring.exception.InvalidFieldsException;
+import com.reactivespring.exception.InvalidSearchException;
+import com.reactivespring.exception.MovieInfoConflictException;
+import com.reactivespring.exception.MovieInfoPreconditionFailedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
 import org.springframework.http.HttpStatus;
@@ -25,4 +30,34 @@ public class GlobalExceptionHandler {
         log.error("Error is : {}", errors);
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errors);
     }
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<String> handleInvalidCursor(InvalidCursorException ex) {
+        log.error("Exception caught in handleInvalidCursor : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidFieldsException.class)
+    public ResponseEntity<String> handleInvalidFields(InvalidFieldsException ex) {
+        log.error("Exception caught in handleInvalidFields : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(InvalidSearchException.class)
+    public ResponseEntity<String> handleInvalidSearch(InvalidSearchException ex) {
+        log.error("Exception caught in handleInvalidSearch : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(MovieInfoConflictException.class)
+    public ResponseEntity<String> handleConflict(MovieInfoConflictException ex) {
+        log.error("Exception caught in handleConflict : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(ex.getMessage());
+    }
+
+    @ExceptionHandler(MovieInfoPreconditionFailedException.class)
+    public ResponseEntity<String> handlePreconditionFailed(MovieInfoPreconditionFailedException ex) {
+        log.error("Exception caught in handlePreconditionFailed : {}", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).body(ex.getMessage());
+    }
 }
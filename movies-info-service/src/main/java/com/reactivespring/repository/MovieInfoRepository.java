@@ -1,11 +1,20 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String> {
+public interface MovieInfoRepository extends ReactiveMongoRepository<MovieInfo, String>, MovieInfoRepositoryCustom {
     Flux<MovieInfo> findByYear(Integer year);
     Mono<MovieInfo> findByName(String name);
+
+    // only the ids are read, the other fields are null; in _id order so it's a walk of the _id index
+    // that never reads the documents (a covered query) rather than a collection scan
+    @Query(value = "{}", fields = "{ '_id' : 1 }", sort = "{ '_id' : 1 }")
+    Flux<MovieInfo> findAllIds();
+
+    // how many were deleted, 0 when there was nothing with that id
+    Mono<Long> deleteByMovieInfoId(String movieInfoId);
 }
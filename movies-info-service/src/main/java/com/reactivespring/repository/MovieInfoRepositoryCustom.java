@@ -0,0 +1,46 @@
+package com.reactivespring.repository;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoUpdate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+public interface MovieInfoRepositoryCustom {
+
+    // keyset page: the first limit movie infos (of the year when it's not null) after afterId in movieInfoId order
+    Flux<MovieInfo> findPageAfter(Integer year, String afterId, int limit);
+
+    // one unordered bulk insert, the write errors by position in movieInfos (empty when all were inserted),
+    // the movie infos without an id get the generated one
+    Mono<Map<Integer, String>> insertAllUnordered(List<MovieInfo> movieInfos);
+
+    // $set of the fields of the update that are not null and +1 on the version in one findAndModify, the new movie info,
+    // empty when there is no movie info with this id (or not at update.version when it's set)
+    Mono<MovieInfo> updateFields(String id, MovieInfoUpdate update);
+
+    // $set of all the fields of movieInfo (the null ones too) and +1 on the version in one findAndModify, the new movie info,
+    // only at expectedVersion when it's not null; with upsert a missing movie info is inserted, otherwise it's empty
+    Mono<MovieInfo> replaceFields(String id, MovieInfo movieInfo, Long expectedVersion, boolean upsert);
+
+    // the version (0 for a document without one), empty when there is no movie info with this id
+    Mono<Long> findVersionById(String id);
+
+    // only the ids and the versions are read, of all the movie infos or of the year when it's not null
+    Flux<MovieInfo> findVersions(Integer year);
+
+    // only the fields (and the id and version) are read, the others are null; of the year when it's not null
+    Flux<MovieInfo> findFields(Integer year, Collection<String> fields);
+
+    Mono<MovieInfo> findFieldsById(String id, Collection<String> fields);
+
+    // how many were deleted, 0 when there was nothing with that id at that version
+    Mono<Long> deleteAtVersion(String id, long version);
+
+    // at most limit movie infos with a word of the name or of a cast member starting with each of the tokens
+    // (case insensitive regexes, a collection scan), what the searches use while the search index isn't loaded
+    Flux<MovieInfo> findByWordPrefixes(List<String> tokens, int limit);
+}
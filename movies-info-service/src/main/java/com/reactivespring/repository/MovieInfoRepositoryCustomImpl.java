@@ -0,0 +1,184 @@
+package com.reactivespring.repository;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.InsertOneModel;
+import com.mongodb.client.result.DeleteResult;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoUpdate;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.mongodb.core.schema.JsonSchemaObject;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/*
+ Every page is an index range scan that starts at the cursor: _id for all the movie infos,
+ the {year: 1, _id: 1} index of MovieInfo for a year, so a deep page costs the same as the first one (no skip).
+ */
+public class MovieInfoRepositoryCustomImpl implements MovieInfoRepositoryCustom {
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+
+    public MovieInfoRepositoryCustomImpl(ReactiveMongoTemplate reactiveMongoTemplate) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+    }
+
+    @Override
+    public Flux<MovieInfo> findPageAfter(Integer year, String afterId, int limit) {
+        Query query = new Query();
+        if (year != null) {
+            query.addCriteria(Criteria.where("year").is(year));
+        }
+        if (afterId != null) {
+            query.addCriteria(after(afterId));
+        }
+        Sort sort = year == null ? Sort.by("movieInfoId") : Sort.by("year", "movieInfoId");
+        return reactiveMongoTemplate.find(query.with(sort).limit(limit), MovieInfo.class);
+    }
+
+    /*
+     Unordered: mongo doesn't stop at the first failed insert (eg. a duplicate id), it inserts all the others
+     and reports every failure in the MongoBulkWriteException.
+     The ids are generated here rather than by the driver so they can be handed back in the movie infos.
+     */
+    @Override
+    public Mono<Map<Integer, String>> insertAllUnordered(List<MovieInfo> movieInfos) {
+        if (movieInfos.isEmpty()) {
+            return Mono.just(Collections.emptyMap());
+        }
+        List<InsertOneModel<Document>> inserts = new ArrayList<>(movieInfos.size());
+        for (MovieInfo movieInfo : movieInfos) {
+            if (movieInfo.getMovieInfoId() == null) {
+                movieInfo.setMovieInfoId(ObjectId.get().toHexString());
+            }
+            Document document = new Document();
+            reactiveMongoTemplate.getConverter().write(movieInfo, document);
+            inserts.add(new InsertOneModel<>(document));
+        }
+        return reactiveMongoTemplate.getCollection(reactiveMongoTemplate.getCollectionName(MovieInfo.class))
+                .flatMap(collection -> Mono.from(collection.bulkWrite(inserts, new BulkWriteOptions().ordered(false))))
+                .map(result -> Collections.<Integer, String>emptyMap())
+                .onErrorResume(MongoBulkWriteException.class, e -> Mono.just(e.getWriteErrors().stream()
+                        .collect(Collectors.toMap(BulkWriteError::getIndex, BulkWriteError::getMessage))));
+    }
+
+    /*
+     One round trip and only the given fields are written: two concurrent updates of different fields both stay,
+     and with update.version the second of two updates from the same version finds nothing.
+     */
+    @Override
+    public Mono<MovieInfo> updateFields(String id, MovieInfoUpdate update) {
+        Query query = byIdAtVersion(id, update.getVersion());
+        Update set = new Update().inc("version", 1);
+        if (update.getName() != null) {
+            set.set("name", update.getName());
+        }
+        if (update.getYear() != null) {
+            set.set("year", update.getYear());
+        }
+        if (update.getCast() != null) {
+            set.set("cast", update.getCast());
+        }
+        if (update.getRelease_date() != null) {
+            set.set("release_date", update.getRelease_date());
+        }
+        return reactiveMongoTemplate.findAndModify(query, set, FindAndModifyOptions.options().returnNew(true), MovieInfo.class);
+    }
+
+    @Override
+    public Mono<MovieInfo> replaceFields(String id, MovieInfo movieInfo, Long expectedVersion, boolean upsert) {
+        Update set = new Update().inc("version", 1)
+                .set("name", movieInfo.getName())
+                .set("year", movieInfo.getYear())
+                .set("cast", movieInfo.getCast())
+                .set("release_date", movieInfo.getRelease_date());
+        return reactiveMongoTemplate.findAndModify(byIdAtVersion(id, expectedVersion), set,
+                FindAndModifyOptions.options().returnNew(true).upsert(upsert), MovieInfo.class);
+    }
+
+    @Override
+    public Mono<Long> findVersionById(String id) {
+        Query query = Query.query(Criteria.where("movieInfoId").is(id));
+        query.fields().include("version");
+        return reactiveMongoTemplate.findOne(query, MovieInfo.class)
+                .map(movieInfo -> movieInfo.getVersion() == null ? 0L : movieInfo.getVersion());
+    }
+
+    @Override
+    public Flux<MovieInfo> findVersions(Integer year) {
+        Query query = year == null ? new Query() : Query.query(Criteria.where("year").is(year));
+        query.fields().include("version");
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    // the id and the version come along for the ETags
+    @Override
+    public Flux<MovieInfo> findFields(Integer year, Collection<String> fields) {
+        Query query = year == null ? new Query() : Query.query(Criteria.where("year").is(year));
+        query.fields().include(fields.toArray(new String[0])).include("version");
+        return reactiveMongoTemplate.find(query, MovieInfo.class);
+    }
+
+    @Override
+    public Mono<MovieInfo> findFieldsById(String id, Collection<String> fields) {
+        Query query = Query.query(Criteria.where("movieInfoId").is(id));
+        query.fields().include(fields.toArray(new String[0])).include("version");
+        return reactiveMongoTemplate.findOne(query, MovieInfo.class);
+    }
+
+    @Override
+    public Mono<Long> deleteAtVersion(String id, long version) {
+        return reactiveMongoTemplate.remove(byIdAtVersion(id, version), MovieInfo.class)
+                .map(DeleteResult::getDeletedCount);
+    }
+
+    @Override
+    public Flux<MovieInfo> findByWordPrefixes(List<String> tokens, int limit) {
+        Criteria[] words = tokens.stream()
+                .map(token -> Pattern.compile("\\b" + Pattern.quote(token), Pattern.CASE_INSENSITIVE))
+                .map(word -> new Criteria().orOperator(Criteria.where("name").regex(word), Criteria.where("cast").regex(word)))
+                .toArray(Criteria[]::new);
+        return reactiveMongoTemplate.find(Query.query(new Criteria().andOperator(words)).limit(limit), MovieInfo.class);
+    }
+
+    // a document without a version is at version 0 ($in null also matches a missing field, $inc creates it)
+    private static Query byIdAtVersion(String id, Long version) {
+        Query query = Query.query(Criteria.where("movieInfoId").is(id));
+        if (version != null) {
+            query.addCriteria(version == 0
+                    ? Criteria.where("version").in(0L, null)
+                    : Criteria.where("version").is(version));
+        }
+        return query;
+    }
+
+    /*
+     The ids are ObjectIds when mongo generated them and Strings when the client set them.
+     Mongo sorts all the Strings before all the ObjectIds and $gt only matches values of the same type,
+     so after a String id come the bigger Strings and then every ObjectId.
+     */
+    private static Criteria after(String afterId) {
+        if (ObjectId.isValid(afterId)) {
+            return Criteria.where("movieInfoId").gt(new ObjectId(afterId));
+        }
+        return new Criteria().orOperator(
+                Criteria.where("movieInfoId").gt(afterId),
+                Criteria.where("movieInfoId").type(JsonSchemaObject.Type.OBJECT_ID));
+    }
+}
@@ -0,0 +1,552 @@
+package com.reactivespring.search;
+
+import com.reactivespring.cache.MovieInfoSnapshot;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.ObjIntConsumer;
+
+/*
+ An inverted index of the name and cast tokens of every movie info, for GET /v1/movieinfos/search?q=.
+ A token is a run of letters and digits, lower case and without accents ("Amélie" -> "amelie").
+ Every token of the query matches the terms that are equal to it, that start with it and, for the longer ones,
+ that are within 1 (4 to 7 letters) or 2 (8 and more) edits of it, swapped letters count as one edit.
+ The terms are a sorted map, the edit distance walks it like a trie: the rows of the distance of a prefix are kept
+ for the next term with the same prefix and a prefix already too far from the token skips all the terms under it.
+ Ranking: the movie infos that match the most tokens of the query first, then the highest score, a token scores
+ its best term in the movie info: 1 equal, 0.5 to 0.9 a prefix (the closer to the whole term the more),
+ 0.5 one edit and 0.25 two, times 2 in the name, times the idf of the term; then the shortest names, then the ids.
+ It is loaded and kept current from MovieInfoEvents by MovieInfoSnapshot like MovieInfoReplica, an event never
+ replaces a newer version.
+ Metrics movieinfo.search.documents and movieinfo.search.terms
+ */
+@Component
+@Slf4j
+public class MovieInfoSearchIndex extends MovieInfoSnapshot {
+
+    private static final long NO_VERSION = Long.MIN_VALUE;
+    // the terms a query token matches at most, the best ones (the equal one, the prefixes and edits by weight, then df)
+    private static final int MAX_EXPANSIONS = 64;
+    private static final float NAME_WEIGHT = 2f;
+
+    // guarded by lock
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private String[] ids = new String[0];
+    private long[] versions = new long[0];
+    // the distinct terms of the name and of the cast of a slot, the Strings of the terms map
+    private String[][] nameTerms = new String[0][];
+    private String[][] castTerms = new String[0][];
+    private int[] nameLengths = new int[0]; // tokens in the name, shorter names rank first
+    private int used;
+    private final IntList freeSlots = new IntList();
+
+    public MovieInfoSearchIndex(MovieInfoRepository movieInfoRepository, MovieInfoEvents movieInfoEvents,
+                                @Value("${movieinfo.search.enabled:true}") boolean enabled,
+                                MeterRegistry meterRegistry) {
+        super(movieInfoRepository, movieInfoEvents, enabled, "movie info search index", "searches go to mongo");
+        Gauge.builder("movieinfo.search.documents", this, MovieInfoSearchIndex::size).register(meterRegistry);
+        Gauge.builder("movieinfo.search.terms", this, MovieInfoSearchIndex::termCount).register(meterRegistry);
+    }
+
+    /*
+     The ids of the best limit movie infos for the query, best first.
+     The tokens go from the one in the fewest movie infos to the most, the postings of a token from the highest score
+     to the lowest. A movie info is scored once, when it's first seen: its own terms give the score of the later tokens
+     and it can't have the earlier ones (it would have been seen). So what isn't seen yet can't score more than the rest
+     of this token and the later ones, and the search stops once the worst of the best limit is better than that:
+     a common word or a short prefix only reads its top postings.
+     */
+    public List<String> search(String query, int limit) {
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(tokens(query)));
+        if (tokens.isEmpty() || limit <= 0) {
+            return Collections.emptyList();
+        }
+        lock.readLock().lock();
+        try {
+            List<Token> order = new ArrayList<>(tokens.size());
+            for (String token : tokens) {
+                order.add(new Token(matches(token)));
+            }
+            order.sort(Comparator.comparingLong(token -> token.documents));
+            int m = order.size();
+            float[] laterMax = new float[m]; // the best score of the tokens after i
+            for (int i = m - 2; i >= 0; i--) {
+                laterMax[i] = laterMax[i + 1] + order.get(i + 1).max();
+            }
+            Top top = new Top(limit);
+            BitSet seen = new BitSet(used);
+            search:
+            for (int i = 0; i < m; i++) {
+                List<Scored> postings = order.get(i).postings;
+                for (int p = 0; p < postings.size(); p++) {
+                    Scored scored = postings.get(p);
+                    for (int k = 0; k < scored.slots.size; k++) {
+                        int slot = scored.slots.values[k];
+                        if (!seen.get(slot)) {
+                            seen.set(slot);
+                            int matched = 1;
+                            float score = scored.score;
+                            for (int later = i + 1; later < m; later++) {
+                                float best = order.get(later).score(nameTerms[slot], castTerms[slot]);
+                                if (best > 0) {
+                                    matched++;
+                                    score += best;
+                                }
+                            }
+                            top.offer(slot, matched, score);
+                        }
+                    }
+                    boolean more = p + 1 < postings.size();
+                    if (top.worstBeats(more ? m - i : m - i - 1, (more ? postings.get(p + 1).score : 0) + laterMax[i])) {
+                        break search;
+                    }
+                }
+            }
+            return top.ids();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return readLocked(slots::size);
+    }
+
+    public int termCount() {
+        return readLocked(terms::size);
+    }
+
+    // lower case letters and digits, without the accents
+    public static List<String> tokens(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String folded = text;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 0x7f) {
+                folded = Normalizer.normalize(text, Normalizer.Form.NFD);
+                break;
+            }
+        }
+        List<String> tokens = new ArrayList<>();
+        StringBuilder token = new StringBuilder();
+        for (int i = 0; i < folded.length(); i++) {
+            char c = folded.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            if (Character.isLetterOrDigit(c)) {
+                token.append(Character.toLowerCase(c));
+            } else if (token.length() > 0) {
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if (token.length() > 0) {
+            tokens.add(token.toString());
+        }
+        return tokens;
+    }
+
+    // guarded by lock: the terms matched by a query token with their weight
+    private Map<String, Float> matches(String token) {
+        Map<String, Float> matches = new HashMap<>();
+        if (terms.containsKey(token)) {
+            matches.put(token, 1f);
+        }
+        // the first ones in order, a term comes before the longer ones it is a prefix of (a short token has thousands)
+        int prefixes = 0;
+        for (String term : terms.subMap(token, false, token + Character.MAX_VALUE, true).keySet()) {
+            if (prefixes++ == MAX_EXPANSIONS) {
+                break;
+            }
+            matches.put(term, 0.5f + 0.4f * token.length() / term.length());
+        }
+        int maxEdits = token.length() >= 8 ? 2 : token.length() >= 4 ? 1 : 0;
+        if (maxEdits > 0) {
+            withinEdits(token, maxEdits, (term, edits) -> matches.merge(term, edits == 1 ? 0.5f : 0.25f, Math::max));
+        }
+        if (matches.size() <= MAX_EXPANSIONS) {
+            return matches;
+        }
+        List<Map.Entry<String, Float>> best = new ArrayList<>(matches.entrySet());
+        best.sort(Map.Entry.<String, Float>comparingByValue().reversed()
+                .thenComparing(match -> -terms.get(match.getKey()).documents()));
+        Map<String, Float> expansions = new HashMap<>();
+        for (Map.Entry<String, Float> match : best.subList(0, MAX_EXPANSIONS)) {
+            expansions.put(match.getKey(), match.getValue());
+        }
+        return expansions;
+    }
+
+    /*
+     The terms within maxEdits of the token (optimal string alignment: insert, delete, substitute, swap two letters).
+     rows[i] is the distance row of the first i letters of prev, they are kept for the next term with the same prefix.
+     */
+    private void withinEdits(String token, int maxEdits, ObjIntConsumer<String> found) {
+        int n = token.length();
+        int[][] rows = new int[16][];
+        rows[0] = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            rows[0][j] = j;
+        }
+        String prev = "";
+        String term = terms.isEmpty() ? null : terms.firstKey();
+        while (term != null) {
+            int common = 0;
+            while (common < prev.length() && common < term.length() && prev.charAt(common) == term.charAt(common)) {
+                common++;
+            }
+            int i = common + 1;
+            boolean tooFar = false;
+            for (; i <= term.length(); i++) {
+                if (i == rows.length) {
+                    rows = Arrays.copyOf(rows, i * 2);
+                }
+                if (rows[i] == null) {
+                    rows[i] = new int[n + 1];
+                }
+                int[] row = rows[i];
+                int[] above = rows[i - 1];
+                char c = term.charAt(i - 1);
+                row[0] = i;
+                int min = i;
+                for (int j = 1; j <= n; j++) {
+                    int distance = Math.min(Math.min(row[j - 1], above[j]) + 1, above[j - 1] + (c == token.charAt(j - 1) ? 0 : 1));
+                    if (i > 1 && j > 1 && c == token.charAt(j - 2) && term.charAt(i - 2) == token.charAt(j - 1)) {
+                        distance = Math.min(distance, rows[i - 2][j - 2] + 1);
+                    }
+                    row[j] = distance;
+                    min = Math.min(min, distance);
+                }
+                if (min > maxEdits) {
+                    tooFar = true;
+                    break;
+                }
+            }
+            if (tooFar) {
+                // no term under this prefix is close enough
+                prev = term.substring(0, i);
+                term = terms.higherKey(prev + Character.MAX_VALUE);
+            } else {
+                int edits = rows[term.length()][n];
+                if (edits <= maxEdits) {
+                    found.accept(term, edits);
+                }
+                prev = term;
+                term = terms.higherKey(term);
+            }
+        }
+    }
+
+    @Override
+    protected void loaded(long millis) {
+        log.info("Movie info search index loaded : {} movie infos, {} terms, in {}ms", size(), termCount(), millis);
+    }
+
+    @Override
+    protected void put(MovieInfo movieInfo) {
+        String id = movieInfo.getMovieInfoId();
+        if (id == null) {
+            return;
+        }
+        long version = movieInfo.getVersion() == null ? 0L : movieInfo.getVersion();
+        Integer slot = slots.get(id);
+        if (slot == null) {
+            slot = freeSlots.size > 0 ? freeSlots.removeLast() : used++;
+            ensureCapacity(slot + 1);
+            slots.put(id, slot);
+        } else if (versions[slot] != NO_VERSION && versions[slot] > version) {
+            return; // an older version than the one already here (the load after an update)
+        } else {
+            unindex(slot);
+        }
+        List<String> name = tokens(movieInfo.getName());
+        List<String> cast = new ArrayList<>();
+        if (movieInfo.getCast() != null) {
+            movieInfo.getCast().forEach(castName -> cast.addAll(tokens(castName)));
+        }
+        ids[slot] = id;
+        versions[slot] = movieInfo.getVersion() == null ? NO_VERSION : version;
+        nameLengths[slot] = name.size();
+        nameTerms[slot] = index(slot, name, true);
+        castTerms[slot] = index(slot, cast, false);
+    }
+
+    private String[] index(int slot, List<String> tokens, boolean name) {
+        Set<String> distinct = new LinkedHashSet<>(tokens);
+        String[] indexed = new String[distinct.size()];
+        int i = 0;
+        for (String token : distinct) {
+            Map.Entry<String, Postings> term = terms.ceilingEntry(token);
+            if (term == null || !term.getKey().equals(token)) {
+                terms.put(token, new Postings());
+                term = terms.ceilingEntry(token);
+            }
+            (name ? term.getValue().name : term.getValue().cast).add(slot);
+            indexed[i++] = term.getKey();
+        }
+        return indexed;
+    }
+
+    @Override
+    protected void delete(String id) {
+        Integer slot = slots.remove(id);
+        if (slot != null) {
+            unindex(slot);
+            ids[slot] = null;
+            freeSlots.add(slot);
+        }
+    }
+
+    private void unindex(int slot) {
+        for (String term : nameTerms[slot]) {
+            Postings postings = terms.get(term);
+            postings.name.remove(slot);
+            removeIfEmpty(term, postings);
+        }
+        for (String term : castTerms[slot]) {
+            Postings postings = terms.get(term);
+            postings.cast.remove(slot);
+            removeIfEmpty(term, postings);
+        }
+        nameTerms[slot] = null;
+        castTerms[slot] = null;
+    }
+
+    private void removeIfEmpty(String term, Postings postings) {
+        if (postings.documents() == 0) {
+            terms.remove(term);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= ids.length) {
+            return;
+        }
+        int grown = Math.max(capacity, Math.max(16, ids.length + (ids.length >> 1)));
+        ids = Arrays.copyOf(ids, grown);
+        versions = Arrays.copyOf(versions, grown);
+        nameTerms = Arrays.copyOf(nameTerms, grown);
+        castTerms = Arrays.copyOf(castTerms, grown);
+        nameLengths = Arrays.copyOf(nameLengths, grown);
+    }
+
+    @Override
+    protected void clear() {
+        terms.clear();
+        slots.clear();
+        ids = new String[0];
+        versions = new long[0];
+        nameTerms = new String[0][];
+        castTerms = new String[0][];
+        nameLengths = new int[0];
+        used = 0;
+        freeSlots.size = 0;
+    }
+
+    // the slots with a term in their name and in their cast
+    private static final class Postings {
+        final IntList name = new IntList();
+        final IntList cast = new IntList();
+
+        int documents() {
+            return name.size + cast.size;
+        }
+    }
+
+    // the postings of the terms matched by a query token, the best scores first
+    private final class Token {
+        final Map<String, Float> nameScores = new HashMap<>(); // term -> score in a name, half of it in a cast
+        final List<Scored> postings = new ArrayList<>();
+        long documents;
+
+        Token(Map<String, Float> matches) {
+            matches.forEach((term, weight) -> {
+                Postings termPostings = terms.get(term);
+                float score = weight * (float) Math.log(1 + (double) slots.size() / termPostings.documents()) * NAME_WEIGHT;
+                nameScores.put(term, score);
+                if (termPostings.name.size > 0) {
+                    postings.add(new Scored(termPostings.name, score));
+                }
+                if (termPostings.cast.size > 0) {
+                    postings.add(new Scored(termPostings.cast, score / NAME_WEIGHT));
+                }
+                documents += termPostings.documents();
+            });
+            postings.sort(Comparator.comparingDouble((Scored scored) -> scored.score).reversed());
+        }
+
+        float max() {
+            return postings.isEmpty() ? 0 : postings.get(0).score;
+        }
+
+        // the score of the best of these terms in a movie info, 0 when it has none
+        float score(String[] name, String[] cast) {
+            float best = 0;
+            for (String term : name) {
+                Float score = nameScores.get(term);
+                if (score != null && score > best) {
+                    best = score;
+                }
+            }
+            for (String term : cast) {
+                Float score = nameScores.get(term);
+                if (score != null && score / NAME_WEIGHT > best) {
+                    best = score / NAME_WEIGHT;
+                }
+            }
+            return best;
+        }
+    }
+
+    private static final class Scored {
+        final IntList slots;
+        final float score;
+
+        Scored(IntList slots, float score) {
+            this.slots = slots;
+            this.score = score;
+        }
+    }
+
+    /*
+     The best limit slots so far, a heap with the worst on top: the most tokens matched, then the score,
+     then the shortest name, then the id.
+     */
+    private final class Top {
+        final int[] slots;
+        final int[] matched;
+        final float[] scores;
+        int size;
+
+        Top(int limit) {
+            slots = new int[limit];
+            matched = new int[limit];
+            scores = new float[limit];
+        }
+
+        void offer(int slot, int slotMatched, float score) {
+            if (size < slots.length) {
+                set(size, slot, slotMatched, score);
+                up(size++);
+            } else if (better(slot, slotMatched, score, 0)) {
+                set(0, slot, slotMatched, score);
+                down(0);
+            }
+        }
+
+        // nothing matching at most that many tokens and scoring at most that much can get in
+        boolean worstBeats(int atMostMatched, float atMostScore) {
+            return size == slots.length
+                    && (matched[0] > atMostMatched || matched[0] == atMostMatched && scores[0] > atMostScore);
+        }
+
+        List<String> ids() {
+            String[] best = new String[size];
+            while (size > 0) {
+                best[size - 1] = ids[slots[0]];
+                set(0, slots[size - 1], matched[size - 1], scores[size - 1]);
+                size--;
+                down(0);
+            }
+            return Arrays.asList(best);
+        }
+
+        private boolean better(int slot, int slotMatched, float score, int than) {
+            if (slotMatched != matched[than]) {
+                return slotMatched > matched[than];
+            }
+            if (score != scores[than]) {
+                return score > scores[than];
+            }
+            int other = slots[than];
+            if (nameLengths[slot] != nameLengths[other]) {
+                return nameLengths[slot] < nameLengths[other];
+            }
+            return ids[slot].compareTo(ids[other]) < 0;
+        }
+
+        private void up(int i) {
+            while (i > 0 && better(slots[(i - 1) / 2], matched[(i - 1) / 2], scores[(i - 1) / 2], i)) {
+                swap(i, (i - 1) / 2);
+                i = (i - 1) / 2;
+            }
+        }
+
+        private void down(int i) {
+            while (true) {
+                int worst = i;
+                for (int child = 2 * i + 1; child <= 2 * i + 2 && child < size; child++) {
+                    if (better(slots[worst], matched[worst], scores[worst], child)) {
+                        worst = child;
+                    }
+                }
+                if (worst == i) {
+                    return;
+                }
+                swap(i, worst);
+                i = worst;
+            }
+        }
+
+        private void set(int i, int slot, int slotMatched, float score) {
+            slots[i] = slot;
+            matched[i] = slotMatched;
+            scores[i] = score;
+        }
+
+        private void swap(int i, int j) {
+            int slot = slots[i];
+            int slotMatched = matched[i];
+            float score = scores[i];
+            set(i, slots[j], matched[j], scores[j]);
+            set(j, slot, slotMatched, score);
+        }
+    }
+
+    // a growable int[], remove swaps the last value in (the order isn't kept)
+    private static final class IntList {
+        int[] values = new int[4];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (values[i] == value) {
+                    values[i] = values[--size];
+                    return;
+                }
+            }
+        }
+
+        int removeLast() {
+            return values[--size];
+        }
+    }
+}
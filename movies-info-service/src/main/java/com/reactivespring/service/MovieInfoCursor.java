@@ -0,0 +1,43 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/*
+ The opaque next page token of the keyset pagination: the (year, movieInfoId) of the last movie info of the page,
+ base64url encoded. The year is part of it so a cursor can't be reused with a different year filter.
+ */
+final class MovieInfoCursor {
+
+    private static final String SEPARATOR = "|";
+
+    private MovieInfoCursor() {
+    }
+
+    static String encode(Integer year, String movieInfoId) {
+        String value = (year == null ? "" : year.toString()) + SEPARATOR + movieInfoId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the movieInfoId to continue after
+    static String decode(String cursor, Integer year) {
+        String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("cursor is not valid");
+        }
+        int separator = value.indexOf(SEPARATOR);
+        if (separator < 0 || separator == value.length() - 1) {
+            throw new InvalidCursorException("cursor is not valid");
+        }
+        String cursorYear = value.substring(0, separator);
+        if (!Objects.equals(cursorYear, year == null ? "" : year.toString())) {
+            throw new InvalidCursorException("cursor was not issued for year " + year);
+        }
+        return value.substring(separator + 1);
+    }
+}
@@ -0,0 +1,214 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.InvalidCursorException;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonString;
+import org.bson.BsonTimestamp;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.ChangeStreamEvent;
+import org.springframework.data.mongodb.core.ChangeStreamOptions;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/*
+ The inserts, updates and deletes of the movie infos as they happen, for GET /v1/movieinfos/events.
+ With a replica set (or mongos) they come from a mongo change stream: the writes of every instance, and of anything
+ else writing the collection, are there and the token of an event is its resume token (the _data of it).
+ A standalone mongod has no change streams, the events then come from the writes of this instance's services through
+ a replay sink: the token is <start of this instance>-<sequence> and a subscriber can only resume
+ from the last movieinfo.events.replay-size events (all of them when the token is from another start).
+ movieinfo.events.source is auto (asks mongo once it's reachable), change-stream or local.
+ */
+@Component
+@Slf4j
+public class MovieInfoEvents {
+
+    private static final Pattern RESUME_TOKEN = Pattern.compile("[0-9A-Fa-f]+");
+
+    private final ReactiveMongoTemplate reactiveMongoTemplate;
+    private final Mono<Boolean> changeStreams;
+    private final Sinks.Many<MovieInfoEvent> local;
+    private final long epoch = System.currentTimeMillis();
+
+    private long sequence; // guarded by this, which also serializes the emissions
+    private volatile boolean publishing = true; // until change streams are known to be there
+
+    public MovieInfoEvents(ReactiveMongoTemplate reactiveMongoTemplate,
+                           @Value("${movieinfo.events.source:auto}") String source,
+                           @Value("${movieinfo.events.replay-size:1024}") int replaySize) {
+        this.reactiveMongoTemplate = reactiveMongoTemplate;
+        this.local = Sinks.many().replay().limit(replaySize);
+        switch (source) {
+            case "change-stream":
+                this.publishing = false;
+                this.changeStreams = Mono.just(true);
+                break;
+            case "local":
+                this.changeStreams = Mono.just(false);
+                break;
+            case "auto":
+                this.changeStreams = supportsChangeStreams();
+                break;
+            default:
+                throw new IllegalArgumentException("movieinfo.events.source is auto, change-stream or local, not " + source);
+        }
+    }
+
+    // a replica set member or a mongos, the answer is cached but not a failure (mongo not up yet)
+    private Mono<Boolean> supportsChangeStreams() {
+        Mono<Boolean> supported = Mono.defer(() -> reactiveMongoTemplate.executeCommand(new Document("isMaster", 1)))
+                .map(isMaster -> isMaster.containsKey("setName") || "isdbgrid".equals(isMaster.get("msg")))
+                .doOnNext(changeStreams -> {
+                    log.info("Movie info events from {}", changeStreams ? "the change stream" : "the writes of this instance");
+                    publishing = !changeStreams;
+                })
+                .cache(value -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+        return supported.onErrorResume(e -> {
+            log.warn("Can't tell if mongo has change streams, using the writes of this instance : {}", e.getMessage());
+            return Mono.just(false);
+        });
+    }
+
+    // the events after resumeToken, or from now on when it's null
+    public Flux<MovieInfoEvent> events(String resumeToken) {
+        return changeStreams.flatMapMany(supported -> supported ? changeStream(resumeToken) : local(resumeToken));
+    }
+
+    // true when the events are the change stream (the writes of every writer), false for the writes of this instance
+    public Mono<Boolean> fromChangeStream() {
+        return changeStreams;
+    }
+
+    /*
+     For the in-memory copies that read the whole collection: the Mono gives the events once "now" is fixed, so
+     subscribing to them and then reading the collection misses no write in between (some come twice, the copies
+     keep the newer version). With change streams now is the operation time of mongo and the stream starts at it
+     however late it's opened, otherwise it's the sequence of the local events when the Mono is subscribed.
+     */
+    public Mono<Flux<MovieInfoEvent>> eventsFromNow() {
+        return changeStreams.flatMap(supported -> supported
+                ? operationTime().map(time -> changeStream(options -> options.resumeAt(time)))
+                : Mono.fromSupplier(() -> localAfter(currentSequence())));
+    }
+
+    public void inserted(MovieInfo movieInfo) {
+        publish(MovieInfoEvent.Type.INSERT, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void updated(MovieInfo movieInfo) {
+        publish(MovieInfoEvent.Type.UPDATE, movieInfo.getMovieInfoId(), movieInfo);
+    }
+
+    public void deleted(String movieInfoId) {
+        publish(MovieInfoEvent.Type.DELETE, movieInfoId, null);
+    }
+
+    private synchronized void publish(MovieInfoEvent.Type type, String movieInfoId, MovieInfo movieInfo) {
+        if (publishing) {
+            local.tryEmitNext(new MovieInfoEvent(epoch + "-" + ++sequence, type, movieInfoId, movieInfo));
+        }
+    }
+
+    private Flux<MovieInfoEvent> local(String resumeToken) {
+        return Flux.defer(() -> localAfter(resumeToken == null ? currentSequence() : sequenceAfter(resumeToken)));
+    }
+
+    // the replay has the last events, the ones up to after are skipped
+    private Flux<MovieInfoEvent> localAfter(long after) {
+        return local.asFlux().filter(event -> sequenceOf(event.getToken()) > after);
+    }
+
+    private synchronized long currentSequence() {
+        return sequence;
+    }
+
+    private long sequenceAfter(String resumeToken) {
+        int dash = resumeToken.indexOf('-');
+        try {
+            long tokenEpoch = Long.parseLong(resumeToken.substring(0, Math.max(dash, 0)));
+            long tokenSequence = Long.parseLong(resumeToken.substring(dash + 1));
+            // from another start of the instance, everything that is still in the replay
+            return tokenEpoch == epoch ? tokenSequence : 0L;
+        } catch (NumberFormatException e) {
+            throw new InvalidCursorException("invalid resume token " + resumeToken);
+        }
+    }
+
+    private static long sequenceOf(String token) {
+        return Long.parseLong(token.substring(token.indexOf('-') + 1));
+    }
+
+    private Flux<MovieInfoEvent> changeStream(String resumeToken) {
+        if (resumeToken == null) {
+            return changeStream(options -> {
+            });
+        }
+        if (!RESUME_TOKEN.matcher(resumeToken).matches()) {
+            return Flux.error(new InvalidCursorException("invalid resume token " + resumeToken));
+        }
+        return changeStream(options -> options.resumeAfter(new BsonDocument("_data", new BsonString(resumeToken))));
+    }
+
+    // the cluster time of the last operation mongo knows of, what a ping answers on a replica set or a mongos
+    private Mono<BsonTimestamp> operationTime() {
+        return Mono.defer(() -> reactiveMongoTemplate.executeCommand(new Document("ping", 1)))
+                .map(reply -> reply.get("operationTime", BsonTimestamp.class));
+    }
+
+    private Flux<MovieInfoEvent> changeStream(Consumer<ChangeStreamOptions.ChangeStreamOptionsBuilder> start) {
+        return Flux.defer(() -> {
+            ChangeStreamOptions.ChangeStreamOptionsBuilder options = ChangeStreamOptions.builder().returnFullDocumentOnUpdate();
+            start.accept(options);
+            return reactiveMongoTemplate.changeStream(reactiveMongoTemplate.getCollectionName(MovieInfo.class),
+                            options.build(), MovieInfo.class)
+                    .handle((event, sink) -> {
+                        MovieInfoEvent movieInfoEvent = toEvent(event);
+                        if (movieInfoEvent != null) {
+                            sink.next(movieInfoEvent);
+                        }
+                    });
+        });
+    }
+
+    // null for the operations that aren't about one movie info (drop, invalidate...)
+    private static MovieInfoEvent toEvent(ChangeStreamEvent<MovieInfo> event) {
+        MovieInfoEvent.Type type;
+        switch (event.getOperationType()) {
+            case INSERT:
+                type = MovieInfoEvent.Type.INSERT;
+                break;
+            case UPDATE:
+            case REPLACE:
+                type = MovieInfoEvent.Type.UPDATE;
+                break;
+            case DELETE:
+                type = MovieInfoEvent.Type.DELETE;
+                break;
+            default:
+                return null;
+        }
+        String token = event.getResumeToken().asDocument().getString("_data").getValue();
+        return new MovieInfoEvent(token, type, movieInfoId(event.getRaw().getDocumentKey().get("_id")),
+                type == MovieInfoEvent.Type.DELETE ? null : event.getBody());
+    }
+
+    // the ids that are ObjectIds are stored as ObjectIds
+    private static String movieInfoId(BsonValue id) {
+        if (id.isObjectId()) {
+            return id.asObjectId().getValue().toHexString();
+        }
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+}
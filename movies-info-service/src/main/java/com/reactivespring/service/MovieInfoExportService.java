@@ -0,0 +1,167 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ The whole collection as gzipped NDJSON for the nightly export, without building it in memory:
+ each movie info read from the cursor is serialized by Jackson straight into a gzip stream that deflates into a DataBuffer
+ of the response (pooled netty buffers), the buffer goes out once it holds movieinfo.export.chunk-size compressed bytes.
+ A buffer is only filled when the response asks for one, and the cursor is asked for at most movieinfo.stream.batch-size
+ documents at a time, so a slow client slows down the reading of the collection.
+ */
+@Service
+public class MovieInfoExportService {
+
+    private final MovieInfoRepository movieInfoRepository;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+    private final int compressionLevel;
+    private final int batchSize;
+
+    public MovieInfoExportService(MovieInfoRepository movieInfoRepository, ObjectMapper objectMapper,
+                                  @Value("${movieinfo.export.chunk-size:65536}") int chunkSize,
+                                  @Value("${movieinfo.export.compression-level:1}") int compressionLevel,
+                                  @Value("${movieinfo.stream.batch-size:256}") int batchSize) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+        this.compressionLevel = compressionLevel;
+        this.batchSize = batchSize;
+    }
+
+    public Flux<DataBuffer> export(DataBufferFactory bufferFactory) {
+        return Flux.using(() -> new GzipNdjsonWriter(objectMapper, bufferFactory, chunkSize, compressionLevel),
+                        writer -> movieInfoRepository.findAll()
+                                .limitRate(batchSize)
+                                .<DataBuffer>handle((movieInfo, sink) -> {
+                                    try {
+                                        DataBuffer full = writer.write(movieInfo);
+                                        if (full != null) {
+                                            sink.next(full);
+                                        }
+                                    } catch (IOException e) {
+                                        sink.error(e);
+                                    }
+                                })
+                                .concatWith(Mono.fromCallable(writer::finish)),
+                        GzipNdjsonWriter::close)
+                .doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /*
+     One per export. write() and finish() run on the thread of the cursor but a cancel closes it on the one of the
+     response, so the three are synchronized and nothing is written once it's closed (the buffers are released).
+     */
+    static final class GzipNdjsonWriter implements AutoCloseable {
+
+        private final ObjectMapper objectMapper;
+        private final DataBufferFactory bufferFactory;
+        private final int chunkSize;
+        private final GZIPOutputStream gzip;
+        private final JsonGenerator generator;
+
+        private DataBuffer current; // guarded by this, like the deflater
+        private boolean closed;
+
+        GzipNdjsonWriter(ObjectMapper objectMapper, DataBufferFactory bufferFactory, int chunkSize, int compressionLevel)
+                throws IOException {
+            this.objectMapper = objectMapper;
+            this.bufferFactory = bufferFactory;
+            this.chunkSize = chunkSize;
+            this.current = allocate();
+            // the deflater writes up to 8KB at a time into the current buffer
+            this.gzip = new GZIPOutputStream(new BufferOutputStream(), 8192) {
+                {
+                    def.setLevel(compressionLevel);
+                }
+            };
+            this.generator = objectMapper.getFactory().createGenerator(gzip, JsonEncoding.UTF8);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(new SerializedString("\n"));
+        }
+
+        private DataBuffer allocate() {
+            return bufferFactory.allocateBuffer(chunkSize + 8192);
+        }
+
+        // the full buffer, or null when it's not full yet or the writer is closed
+        synchronized DataBuffer write(MovieInfo movieInfo) throws IOException {
+            if (closed) {
+                return null;
+            }
+            objectMapper.writeValue(generator, movieInfo); // flushes the generator into the gzip stream
+            if (current.readableByteCount() < chunkSize) {
+                return null;
+            }
+            DataBuffer full = current;
+            current = allocate();
+            return full;
+        }
+
+        // the rest of the compressed data and the gzip trailer, null when the writer is closed
+        synchronized DataBuffer finish() throws IOException {
+            if (closed) {
+                return null;
+            }
+            generator.writeRaw('\n');
+            generator.flush();
+            gzip.finish();
+            DataBuffer last = current;
+            current = null;
+            return last;
+        }
+
+        // ends the deflater, and releases the buffer being filled when the export was cancelled or failed
+        @Override
+        public synchronized void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            DataBuffer unfinished = current;
+            current = null;
+            if (unfinished != null) {
+                DataBufferUtils.release(unfinished);
+            }
+            try {
+                gzip.close();
+            } catch (IOException ignored) {
+                // nothing is written anymore
+            }
+        }
+
+        // after finish() or close() there is nowhere to write, only the trailer of a closed export comes here
+        private final class BufferOutputStream extends OutputStream {
+
+            @Override
+            public void write(int b) {
+                if (current != null) {
+                    current.write((byte) b);
+                }
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) {
+                if (current != null) {
+                    current.write(bytes, offset, length);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidFieldsException;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/*
+ The fields= of the movie info reads, eg. fields=name,year: the names are the JSON names of MovieInfo.
+ They become the mongo projection, and the response only has these fields (in the MovieInfo order).
+ */
+public final class MovieInfoFields {
+
+    private static final Map<String, Function<MovieInfo, Object>> FIELDS = new LinkedHashMap<>();
+
+    static {
+        FIELDS.put("movieInfoId", MovieInfo::getMovieInfoId);
+        FIELDS.put("name", MovieInfo::getName);
+        FIELDS.put("year", MovieInfo::getYear);
+        FIELDS.put("cast", MovieInfo::getCast);
+        FIELDS.put("release_date", MovieInfo::getRelease_date);
+        FIELDS.put("version", MovieInfo::getVersion);
+    }
+
+    private MovieInfoFields() {
+    }
+
+    // null when fields is null (the whole movie info), otherwise the names in the MovieInfo order
+    public static Set<String> parse(String fields) {
+        if (fields == null) {
+            return null;
+        }
+        Set<String> requested = new LinkedHashSet<>();
+        for (String field : fields.split(",")) {
+            if (!field.isBlank()) {
+                requested.add(field.trim());
+            }
+        }
+        if (requested.isEmpty()) {
+            throw new InvalidFieldsException("fields is empty, the fields are " + String.join(",", FIELDS.keySet()));
+        }
+        Set<String> unknown = new LinkedHashSet<>(requested);
+        unknown.removeAll(FIELDS.keySet());
+        if (!unknown.isEmpty()) {
+            throw new InvalidFieldsException("unknown fields " + String.join(",", unknown)
+                    + ", the fields are " + String.join(",", FIELDS.keySet()));
+        }
+        Set<String> ordered = FIELDS.keySet().stream()
+                .filter(requested::contains)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        return Collections.unmodifiableSet(ordered);
+    }
+
+    // like the JSON of the whole movie info, a version is only there when it's not null
+    public static Map<String, Object> select(MovieInfo movieInfo, Set<String> fields) {
+        Map<String, Object> selected = new LinkedHashMap<>();
+        for (String field : fields) {
+            Object value = FIELDS.get(field).apply(movieInfo);
+            if (value != null || !field.equals("version")) {
+                selected.put(field, value);
+            }
+        }
+        return selected;
+    }
+
+    public static List<Map<String, Object>> select(List<MovieInfo> movieInfos, Set<String> fields) {
+        return movieInfos.stream().map(movieInfo -> select(movieInfo, fields)).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,162 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.cache.MovieInfoIdFilter;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/*
+ Bulk import of NDJSON movie infos: each line is read and validated with the MovieInfo constraints on its own,
+ the records are grouped in batches of movieinfo.import.batch-size (or whatever came in movieinfo.import.batch-timeout)
+ and every batch is one unordered bulk insert. A line that can't be read, a record that isn't valid and an insert that
+ failed (eg. the id exists already) are failures of their batch, the import goes on with the next records.
+ The batches are written one at a time and the body is only read as far as the batch being cut asks for, a slow mongo
+ slows down the reading of the body. The timeout is a flush marker merged into the records, the markers nobody asked for
+ are dropped (bufferTimeout keeps its timer going and fails with "Could not emit buffer due to lack of requests" when
+ the inserts are behind).
+ */
+@Service
+@Slf4j
+public class MovieInfoImportService {
+
+    private final MovieInfoRepository movieInfoRepository;
+    private final MovieInfoIdFilter movieInfoIdFilter;
+    private final MovieInfoEvents movieInfoEvents;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int batchSize;
+    private final Duration batchTimeout;
+
+    public MovieInfoImportService(MovieInfoRepository movieInfoRepository, MovieInfoIdFilter movieInfoIdFilter,
+                                  MovieInfoEvents movieInfoEvents, ObjectMapper objectMapper, Validator validator,
+                                  @Value("${movieinfo.import.batch-size:500}") int batchSize,
+                                  @Value("${movieinfo.import.batch-timeout:1s}") Duration batchTimeout) {
+        this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoIdFilter = movieInfoIdFilter;
+        this.movieInfoEvents = movieInfoEvents;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.batchTimeout = batchTimeout;
+    }
+
+    // lines of the body, the blank ones are skipped (but counted for the line numbers)
+    public Flux<MovieInfoImportResult> importMovieInfos(Flux<String> lines) {
+        Flux<ImportRecord> records = lines.index((index, line) -> read(index + 1, line))
+                .filter(record -> record.movieInfo != null || record.failure != null);
+        return batches(records)
+                .index()
+                .concatMap(batch -> write(batch.getT1() + 1, batch.getT2()), 1);
+    }
+
+    // a batch is cut at batchSize records or at the first flush after batchTimeout, whatever comes first
+    private Flux<List<ImportRecord>> batches(Flux<ImportRecord> records) {
+        Flux<ImportRecord> flushed = records.publish(shared -> Flux.merge(1, shared,
+                Flux.interval(batchTimeout, batchTimeout)
+                        .map(tick -> FLUSH)
+                        .onBackpressureDrop()
+                        .takeUntilOther(shared.ignoreElements())));
+        return Flux.defer(() -> {
+            int[] size = {0};
+            return flushed.bufferUntil(record -> {
+                if (record == FLUSH || ++size[0] == batchSize) {
+                    size[0] = 0;
+                    return true;
+                }
+                return false;
+            });
+        })
+                .map(batch -> batch.stream().filter(record -> record != FLUSH).collect(Collectors.toList()))
+                .filter(batch -> !batch.isEmpty());
+    }
+
+    private ImportRecord read(long line, String text) {
+        if (text.isBlank()) {
+            return new ImportRecord(line, null, null);
+        }
+        MovieInfo movieInfo;
+        try {
+            movieInfo = objectMapper.readValue(text, MovieInfo.class);
+        } catch (JsonProcessingException e) {
+            return new ImportRecord(line, null, "invalid JSON : " + e.getOriginalMessage());
+        }
+        if (movieInfo == null) {
+            return new ImportRecord(line, null, "invalid JSON : null");
+        }
+        String violations = validator.validate(movieInfo).stream()
+                .map(ConstraintViolation::getMessage)
+                .sorted()
+                .collect(Collectors.joining(","));
+        return new ImportRecord(line, movieInfo, violations.isEmpty() ? null : violations);
+    }
+
+    private Mono<MovieInfoImportResult> write(long batch, List<ImportRecord> records) {
+        List<MovieInfoImportResult.Failure> failures = new ArrayList<>();
+        List<ImportRecord> valid = new ArrayList<>(records.size());
+        for (ImportRecord record : records) {
+            if (record.failure == null) {
+                valid.add(record);
+            } else {
+                failures.add(failure(record, record.failure));
+            }
+        }
+        List<MovieInfo> movieInfos = valid.stream().map(record -> record.movieInfo).collect(Collectors.toList());
+        return movieInfoRepository.insertAllUnordered(movieInfos)
+                .onErrorResume(e -> {
+                    log.error("Import batch {} failed", batch, e);
+                    return Mono.just(IntStream.range(0, valid.size()).boxed()
+                            .collect(Collectors.toMap(i -> i, i -> String.valueOf(e.getMessage()))));
+                })
+                .map(errors -> {
+                    for (int i = 0; i < valid.size(); i++) {
+                        ImportRecord record = valid.get(i);
+                        String error = errors.get(i);
+                        if (error == null) {
+                            movieInfoIdFilter.add(record.movieInfo.getMovieInfoId());
+                            movieInfoEvents.inserted(record.movieInfo);
+                        } else {
+                            failures.add(failure(record, error));
+                        }
+                    }
+                    failures.sort(Comparator.comparingLong(MovieInfoImportResult.Failure::getLine));
+                    log.info("Import batch {} : {} received, {} failed", batch, records.size(), failures.size());
+                    return new MovieInfoImportResult(batch, records.size(), valid.size() - errors.size(), failures);
+                });
+    }
+
+    private static MovieInfoImportResult.Failure failure(ImportRecord record, String reason) {
+        String id = record.movieInfo == null ? null : record.movieInfo.getMovieInfoId();
+        return new MovieInfoImportResult.Failure(record.line, id, reason);
+    }
+
+    private static final ImportRecord FLUSH = new ImportRecord(0, null, null);
+
+    private static final class ImportRecord {
+        final long line;
+        final MovieInfo movieInfo;
+        final String failure;
+
+        ImportRecord(long line, MovieInfo movieInfo, String failure) {
+            this.line = line;
+            this.movieInfo = movieInfo;
+            this.failure = failure;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.reactivespring.service;
+
+import com.reactivespring.cache.MovieInfoReplica;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidSearchException;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.search.MovieInfoSearchIndex;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+/*
+ The ids come from MovieInfoSearchIndex in the order of the ranking, the movie infos from the replica when it's loaded,
+ otherwise from one findAllById. Until the index is loaded (or with movieinfo.search.enabled=false) the search is
+ the word prefix regexes of the repository: no edits, no ranking and a scan of the collection.
+ */
+@Service
+public class MovieInfoSearchService {
+
+    private final MovieInfoSearchIndex movieInfoSearchIndex;
+    private final MovieInfoReplica movieInfoReplica;
+    private final MovieInfoRepository movieInfoRepository;
+
+    public MovieInfoSearchService(MovieInfoSearchIndex movieInfoSearchIndex, MovieInfoReplica movieInfoReplica,
+                                  MovieInfoRepository movieInfoRepository) {
+        this.movieInfoSearchIndex = movieInfoSearchIndex;
+        this.movieInfoReplica = movieInfoReplica;
+        this.movieInfoRepository = movieInfoRepository;
+    }
+
+    public Flux<MovieInfo> search(String query, int limit) {
+        List<String> tokens = MovieInfoSearchIndex.tokens(query);
+        if (tokens.isEmpty()) {
+            throw new InvalidSearchException("q must have a letter or a digit");
+        }
+        if (!movieInfoSearchIndex.isReady()) {
+            return movieInfoRepository.findByWordPrefixes(tokens, limit);
+        }
+        List<String> ids = movieInfoSearchIndex.search(query, limit);
+        if (movieInfoReplica.isReady()) {
+            return Flux.fromIterable(ids)
+                    .handle((id, sink) -> {
+                        MovieInfo movieInfo = movieInfoReplica.get(id);
+                        if (movieInfo != null) {
+                            sink.next(movieInfo);
+                        }
+                    });
+        }
+        // in the order of the ids, one deleted in between isn't there
+        return movieInfoRepository.findAllById(ids)
+                .collectMap(MovieInfo::getMovieInfoId)
+                .flatMapIterable(movieInfos -> ids.stream()
+                        .filter(movieInfos::containsKey)
+                        .map(movieInfos::get)
+                        .collect(Collectors.toList()));
+    }
+}
@@ -1,49 +1,213 @@
 package com.reactivespring.service;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.cache.MovieInfoIdFilter;
+import com.reactivespring.cache.MovieInfoReplica;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoUpdate;
+import com.reactivespring.exception.MovieInfoConflictException;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+import java.util.Set;
+
 @Service
 public class MovieInfoService {
 
     MovieInfoRepository movieInfoRepository;
+    MovieInfoCache movieInfoCache;
+    MovieInfoIdFilter movieInfoIdFilter;
+    MovieInfoEvents movieInfoEvents;
+    MovieInfoReplica movieInfoReplica;
+    // concurrent lookups of the same year share one query (concurrent misses of the same id already share the cache load)
+    SingleFlight<Integer, MovieInfo> movieInfoByYearFlight = new SingleFlight<>();
 
-    public MovieInfoService(MovieInfoRepository movieInfoRepository) {
+    public MovieInfoService(MovieInfoRepository movieInfoRepository, MovieInfoCache movieInfoCache,
+                            MovieInfoIdFilter movieInfoIdFilter, MovieInfoEvents movieInfoEvents,
+                            MovieInfoReplica movieInfoReplica) {
         this.movieInfoRepository = movieInfoRepository;
+        this.movieInfoCache = movieInfoCache;
+        this.movieInfoIdFilter = movieInfoIdFilter;
+        this.movieInfoEvents = movieInfoEvents;
+        this.movieInfoReplica = movieInfoReplica;
     }
 
     public Mono<MovieInfo> addMovieInfo(MovieInfo movieInfo) {
-        return movieInfoRepository.save(movieInfo);
+        // the version is the server's, a new movie info doesn't start at whatever the client sent
+        movieInfo.setVersion(null);
+        // with an id it can be one that already exists: overwritten at the next version, not back at version 0
+        Mono<MovieInfo> written = movieInfo.getMovieInfoId() == null
+                ? movieInfoRepository.save(movieInfo)
+                : movieInfoRepository.replaceFields(movieInfo.getMovieInfoId(), movieInfo, null, true);
+        return written
+                .doOnNext(saved -> movieInfoIdFilter.add(saved.getMovieInfoId()))
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(this::publishAdded);
+    }
+
+    // the upsert of a new id is at version 1, an overwrite at a later one (an overwrite of version 0 looks like an insert)
+    private void publishAdded(MovieInfo saved) {
+        if (saved.getVersion() != null && saved.getVersion() > 1) {
+            movieInfoEvents.updated(saved);
+        } else {
+            movieInfoEvents.inserted(saved);
+        }
     }
 
+    // from the replica when it's loaded (movieinfo.replica.enabled), the same for the reads by id and by year
     public Flux<MovieInfo> getAllMovieInfo() {
+        if (movieInfoReplica.isReady()) {
+            return movieInfoReplica.getAll();
+        }
         return movieInfoRepository.findAll();
     }
 
+    // keyset pagination, cursor is the nextCursor of the previous page (null for the first one)
+    public Mono<MovieInfoPage> getMovieInfoPage(Integer year, String cursor, int size) {
+        return Mono.defer(() -> {
+            String afterId = cursor == null ? null : MovieInfoCursor.decode(cursor, year);
+            // one more than the page size, to know if there is a next page
+            return movieInfoRepository.findPageAfter(year, afterId, size + 1)
+                    .collectList()
+                    .map(movieInfos -> {
+                        if (movieInfos.size() <= size) {
+                            return new MovieInfoPage(movieInfos, null);
+                        }
+                        List<MovieInfo> page = movieInfos.subList(0, size);
+                        return new MovieInfoPage(page, MovieInfoCursor.encode(year, page.get(size - 1).getMovieInfoId()));
+                    });
+        });
+    }
+
+    // empty straight away for an id the filter has never seen, otherwise read through the cache, only a miss goes to mongo
     public Mono<MovieInfo> getAllMovieInfoById(String Id) {
-        Mono<MovieInfo> movieInfoMono =  movieInfoRepository.findById(Id);
+        if (movieInfoReplica.isReady()) {
+            return Mono.justOrEmpty(movieInfoReplica.get(Id));
+        }
+        if (!movieInfoIdFilter.mightContain(Id)) {
+            return Mono.empty();
+        }
+        Mono<MovieInfo> movieInfoMono = movieInfoCache.get(Id, movieInfoRepository::findById)
+                .switchIfEmpty(Mono.fromRunnable(movieInfoIdFilter::recordFalsePositive));
         return movieInfoMono;
     }
 
+    // without reading the document when it's not cached, empty for an unknown id
+    public Mono<Long> getMovieInfoVersion(String id) {
+        if (movieInfoReplica.isReady()) {
+            return Mono.justOrEmpty(movieInfoReplica.getVersion(id));
+        }
+        if (!movieInfoIdFilter.mightContain(id)) {
+            return Mono.empty();
+        }
+        MovieInfo cached = movieInfoCache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(cached.getVersion() == null ? 0L : cached.getVersion());
+        }
+        return movieInfoRepository.findVersionById(id);
+    }
+
+    // the movie infos of the year (all of them when it's null) with only the fields read from mongo
+    public Flux<MovieInfo> getMovieInfoFields(Integer year, Set<String> fields) {
+        return movieInfoRepository.findFields(year, fields);
+    }
+
+    // from the cache when it's there, the projected document is not cached
+    public Mono<MovieInfo> getMovieInfoFieldsById(String id, Set<String> fields) {
+        if (!movieInfoIdFilter.mightContain(id)) {
+            return Mono.empty();
+        }
+        MovieInfo cached = movieInfoCache.getIfPresent(id);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
+        return movieInfoRepository.findFieldsById(id, fields);
+    }
+
+    // the ids and versions of the movie infos of the year (all of them when it's null), the other fields are null
+    public Flux<MovieInfo> getMovieInfoVersions(Integer year) {
+        if (movieInfoReplica.isReady()) {
+            return Flux.defer(() -> Flux.fromIterable(movieInfoReplica.getVersions(year)));
+        }
+        return movieInfoRepository.findVersions(year);
+    }
+
+    // one findAndModify with $inc like PATCH and the PUT with If-Match, so two writes never get the same version
     public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id) {
-        return movieInfoRepository.findById(id)
-                .flatMap(movieInfo -> {
-                    movieInfo.setYear(updatedMovieInfo.getYear());
-                    movieInfo.setCast(updatedMovieInfo.getCast());
-                    movieInfo.setName(updatedMovieInfo.getName());
-                    movieInfo.setRelease_date(updatedMovieInfo.getRelease_date());
-                    return movieInfoRepository.save(movieInfo);
-                });
+        return movieInfoRepository.replaceFields(id, updatedMovieInfo, null, false)
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(movieInfoEvents::updated)
+                .doOnError(e -> movieInfoCache.invalidate(id));
+    }
+
+    // only the fields in the update are written, in one round trip; a stale update.version is a conflict
+    public Mono<MovieInfo> patchMovieInfo(MovieInfoUpdate update, String id) {
+        if (!movieInfoIdFilter.mightContain(id)) {
+            return Mono.empty();
+        }
+        return movieInfoRepository.updateFields(id, update)
+                .switchIfEmpty(conflictIfExists(id, update.getVersion()))
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(movieInfoEvents::updated)
+                .doOnError(e -> movieInfoCache.invalidate(id));
+    }
+
+    // the PUT of a client that read expectedVersion: one findAndModify that only matches at that version
+    public Mono<MovieInfo> updateMovieInfo(MovieInfo updatedMovieInfo, String id, long expectedVersion) {
+        return movieInfoRepository.replaceFields(id, updatedMovieInfo, expectedVersion, false)
+                .switchIfEmpty(conflictIfExists(id, expectedVersion))
+                .doOnNext(movieInfoCache::put)
+                .doOnNext(movieInfoEvents::updated)
+                .doOnError(e -> movieInfoCache.invalidate(id));
+    }
+
+    // nothing was updated: a missing movie info or another version, only a failed update pays this lookup
+    private Mono<MovieInfo> conflictIfExists(String id, Long expectedVersion) {
+        return Mono.defer(() -> expectedVersion == null
+                ? Mono.empty()
+                : movieInfoRepository.existsById(id).flatMap(exists -> exists
+                        ? Mono.error(new MovieInfoConflictException("movieInfo " + id + " is not at version " + expectedVersion))
+                        : Mono.empty()));
     }
 
     public Mono<Void> deleteMovieInfo(String id) {
-        return movieInfoRepository.deleteById(id);
+        return movieInfoRepository.deleteByMovieInfoId(id)
+                .doOnNext(deleted -> {
+                    if (deleted > 0) {
+                        movieInfoEvents.deleted(id);
+                    }
+                })
+                .doFinally(signalType -> movieInfoCache.invalidate(id))
+                .then();
+    }
+
+    // nothing deleted is a conflict, the movie info is missing or at another version
+    public Mono<Void> deleteMovieInfo(String id, long expectedVersion) {
+        return movieInfoRepository.deleteAtVersion(id, expectedVersion)
+                .flatMap(deleted -> {
+                    if (deleted == 0) {
+                        return Mono.error(new MovieInfoConflictException("movieInfo " + id + " is not at version " + expectedVersion));
+                    }
+                    movieInfoEvents.deleted(id);
+                    return Mono.empty();
+                })
+                .doFinally(signalType -> movieInfoCache.invalidate(id))
+                .then();
+    }
+
+    // straight from the cursor, no coalescing: a shared load would keep every movie info for the late subscribers
+    public Flux<MovieInfo> streamMovieInfos(Integer year) {
+        return year == null ? movieInfoRepository.findAll() : movieInfoRepository.findByYear(year);
     }
 
     public Flux<MovieInfo> getAllMovieInfoByYear(Integer year) {
-        return movieInfoRepository.findByYear(year);
+        if (movieInfoReplica.isReady()) {
+            return Flux.defer(() -> Flux.fromIterable(movieInfoReplica.getByYear(year)));
+        }
+        return movieInfoByYearFlight.flux(year, movieInfoRepository::findByYear);
     }
 }
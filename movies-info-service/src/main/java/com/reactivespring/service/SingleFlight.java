@@ -0,0 +1,40 @@
+package com.reactivespring.service;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/*
+ Coalesces concurrent calls with the same key: the first caller starts the load, the ones arriving while it runs
+ subscribe to the same load and get all of its elements (the ones already emitted are replayed to them).
+ Nothing is kept once the load terminates, the next call starts a new one.
+ A caller cancelling only removes itself, the load is cancelled when the last of its callers cancels.
+ */
+public final class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public Flux<V> flux(K key, Function<? super K, ? extends Publisher<V>> loader) {
+        return Flux.defer(() -> inFlight.computeIfAbsent(key, k -> new Flight(k, loader.apply(k))).shared);
+    }
+
+    // loads running right now
+    public int inFlight() {
+        return inFlight.size();
+    }
+
+    private final class Flight {
+
+        private final Flux<V> shared;
+
+        Flight(K key, Publisher<V> source) {
+            this.shared = Flux.from(source)
+                    .doFinally(signalType -> inFlight.remove(key, this))
+                    .replay()
+                    .refCount();
+        }
+    }
+}
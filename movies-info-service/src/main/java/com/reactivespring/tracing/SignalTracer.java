@@ -0,0 +1,343 @@
+package com.reactivespring.tracing;
+
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/*
+ Same SignalTracer as in reactive-programming-using-reactor (this service is built on its own).
+ A cheaper .log() for hot pipelines: .transform(tracer.traceFlux("stream"))
+ - can be switched on and off at runtime, when off a new subscription goes straight to the source (no extra operator)
+ - onNext is only recorded for 1 in sampleEvery signals, or when the downstream took longer than slowThreshold
+ - subscribe, request, cancel, complete and error are always recorded, with the time since the subscription
+ - recording is a write into a fixed size ring buffer, the oldest events are overwritten when nobody drains it
+ - drain(...) reads the events, startLogging(period) drains them to the logger on a background thread
+ The global tracer is configured with -Dsignal.tracing.enabled, -Dsignal.tracing.sampleEvery and
+ -Dsignal.tracing.slowThresholdMillis, and logs every second when it is enabled.
+ */
+public final class SignalTracer {
+
+    private static final Logger log = LoggerFactory.getLogger(SignalTracer.class);
+
+    private static final SignalTracer GLOBAL = createGlobal();
+
+    private final AtomicReferenceArray<Event> ring;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private long tail;
+    private long lost;
+
+    private volatile boolean enabled;
+    private volatile int sampleEvery = 100;
+    private volatile long slowThresholdNanos = -1L;
+
+    private Disposable logging;
+
+    // capacity is rounded up to a power of 2
+    public SignalTracer(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public static SignalTracer global() {
+        return GLOBAL;
+    }
+
+    private static SignalTracer createGlobal() {
+        SignalTracer tracer = new SignalTracer(4096);
+        tracer.setSampleEvery(Integer.getInteger("signal.tracing.sampleEvery", 100));
+        long slowThresholdMillis = Long.getLong("signal.tracing.slowThresholdMillis", -1L);
+        if (slowThresholdMillis >= 0) {
+            tracer.setSlowThreshold(Duration.ofMillis(slowThresholdMillis));
+        }
+        if (Boolean.getBoolean("signal.tracing.enabled")) {
+            tracer.setEnabled(true);
+            tracer.startLogging(Duration.ofSeconds(1));
+        }
+        return tracer;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // 1 records every onNext, 0 records none (only the slow ones if a slowThreshold is set)
+    public void setSampleEvery(int sampleEvery) {
+        if (sampleEvery < 0) {
+            throw new IllegalArgumentException("sampleEvery must not be negative but was " + sampleEvery);
+        }
+        this.sampleEvery = sampleEvery;
+    }
+
+    // null switches the slow signal recording off
+    public void setSlowThreshold(Duration slowThreshold) {
+        this.slowThresholdNanos = slowThreshold == null ? -1L : slowThreshold.toNanos();
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> traceFlux(String name) {
+        return flux -> new TracedFlux<>(flux, name, this);
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> traceMono(String name) {
+        return mono -> new TracedMono<>(mono, name, this);
+    }
+
+    void record(String name, SignalType type, long sinceSubscribeNanos, long value, Object detail) {
+        long sequence = head.getAndIncrement();
+        ring.lazySet((int) (sequence & mask), new Event(sequence, name, type, sinceSubscribeNanos, value, detail,
+                Thread.currentThread().getName()));
+    }
+
+    // hands the events recorded since the last drain to the consumer, oldest first
+    public synchronized int drain(Consumer<Event> consumer) {
+        long end = head.get();
+        if (end - tail > ring.length()) {
+            lost += end - tail - ring.length();
+            tail = end - ring.length();
+        }
+        int drained = 0;
+        for (; tail < end; tail++) {
+            Event event = ring.getAndSet((int) (tail & mask), null);
+            // a slot can still be empty (the writer is not done yet) or hold a newer lap, those events are skipped
+            if (event != null && event.getSequence() == tail) {
+                consumer.accept(event);
+                drained++;
+            } else {
+                lost++;
+            }
+        }
+        return drained;
+    }
+
+    public List<Event> drain() {
+        List<Event> events = new ArrayList<>();
+        drain(events::add);
+        return events;
+    }
+
+    // events overwritten before they were drained
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    public synchronized void startLogging(Duration period) {
+        if (logging != null) {
+            return;
+        }
+        Scheduler scheduler = Schedulers.newSingle("signal-tracer", true);
+        logging = Disposables.composite(scheduler, scheduler.schedulePeriodically(
+                () -> drain(event -> log.info("{}", event)), period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS));
+    }
+
+    public synchronized void stopLogging() {
+        if (logging != null) {
+            logging.dispose();
+            logging = null;
+        }
+    }
+
+    public static final class Event {
+
+        private final long sequence;
+        private final String name;
+        private final SignalType type;
+        private final long sinceSubscribeNanos;
+        private final long value;
+        private final Object detail;
+        private final String thread;
+
+        Event(long sequence, String name, SignalType type, long sinceSubscribeNanos, long value, Object detail, String thread) {
+            this.sequence = sequence;
+            this.name = name;
+            this.type = type;
+            this.sinceSubscribeNanos = sinceSubscribeNanos;
+            this.value = value;
+            this.detail = detail;
+            this.thread = thread;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public SignalType getType() {
+            return type;
+        }
+
+        public long getSinceSubscribeNanos() {
+            return sinceSubscribeNanos;
+        }
+
+        // request: n, onNext: the index of the element, cancel/onComplete/onError: how many elements were emitted
+        public long getValue() {
+            return value;
+        }
+
+        // onNext: the element, onError: the error
+        public Object getDetail() {
+            return detail;
+        }
+
+        public String getThread() {
+            return thread;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + thread + "] " + name + " " + type + "(" + value + (detail == null ? "" : ", " + detail) + ") +"
+                    + Duration.ofNanos(sinceSubscribeNanos).toMillis() + "ms";
+        }
+    }
+
+    static final class TracedFlux<T> extends Flux<T> {
+
+        private final Flux<T> source;
+        private final String name;
+        private final SignalTracer tracer;
+
+        TracedFlux(Flux<T> source, String name, SignalTracer tracer) {
+            this.source = source;
+            this.name = name;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super T> actual) {
+            if (tracer.enabled) {
+                source.subscribe(new TraceSubscriber<>(actual, name, tracer));
+            } else {
+                source.subscribe(actual);
+            }
+        }
+    }
+
+    static final class TracedMono<T> extends Mono<T> {
+
+        private final Mono<T> source;
+        private final String name;
+        private final SignalTracer tracer;
+
+        TracedMono(Mono<T> source, String name, SignalTracer tracer) {
+            this.source = source;
+            this.name = name;
+            this.tracer = tracer;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super T> actual) {
+            if (tracer.enabled) {
+                source.subscribe(new TraceSubscriber<>(actual, name, tracer));
+            } else {
+                source.subscribe(actual);
+            }
+        }
+    }
+
+    static final class TraceSubscriber<T> implements CoreSubscriber<T>, Subscription {
+
+        private final CoreSubscriber<? super T> actual;
+        private final String name;
+        private final SignalTracer tracer;
+        private final int sampleEvery;
+        private final long slowThresholdNanos;
+
+        private Subscription upstream;
+        private long subscribedAt;
+        private long count;
+
+        TraceSubscriber(CoreSubscriber<? super T> actual, String name, SignalTracer tracer) {
+            this.actual = actual;
+            this.name = name;
+            this.tracer = tracer;
+            this.sampleEvery = tracer.sampleEvery;
+            this.slowThresholdNanos = tracer.slowThresholdNanos;
+        }
+
+        private long sinceSubscribe() {
+            return System.nanoTime() - subscribedAt;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            upstream = s;
+            subscribedAt = System.nanoTime();
+            tracer.record(name, SignalType.ON_SUBSCRIBE, 0L, 0L, null);
+            actual.onSubscribe(this);
+        }
+
+        @Override
+        public void onNext(T t) {
+            long index = count++;
+            boolean sampled = sampleEvery > 0 && index % sampleEvery == 0;
+            if (slowThresholdNanos < 0L) {
+                if (sampled) {
+                    tracer.record(name, SignalType.ON_NEXT, sinceSubscribe(), index, t);
+                }
+                actual.onNext(t);
+                return;
+            }
+            long start = System.nanoTime();
+            actual.onNext(t);
+            long elapsed = System.nanoTime() - start;
+            if (sampled || elapsed >= slowThresholdNanos) {
+                tracer.record(name, SignalType.ON_NEXT, start - subscribedAt, index, t);
+            }
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            tracer.record(name, SignalType.ON_ERROR, sinceSubscribe(), count, t);
+            actual.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            tracer.record(name, SignalType.ON_COMPLETE, sinceSubscribe(), count, null);
+            actual.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            tracer.record(name, SignalType.REQUEST, sinceSubscribe(), n, null);
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            tracer.record(name, SignalType.CANCEL, sinceSubscribe(), count, null);
+            upstream.cancel();
+        }
+    }
+}
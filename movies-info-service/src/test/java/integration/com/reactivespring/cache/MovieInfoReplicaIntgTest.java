@@ -0,0 +1,94 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The replica benchmark: 100k movie infos with 10 cast each out of 20k actors, prints the memory per movie info
+ and the read latency by id and by year of the replica against mongo. Only runs with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "movieinfo.replica.enabled=true")
+@ActiveProfiles("test")
+class MovieInfoReplicaIntgTest {
+
+    private static final int MOVIE_INFOS = 100_000;
+    private static final int RUNS = 2_000;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    MovieInfoReplica movieInfoReplica;
+
+    @BeforeEach
+    void setUp() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.range(0, MOVIE_INFOS)
+                        .map(i -> new MovieInfo("id" + i, "Movie " + i, 1950 + i % 70,
+                                IntStream.range(0, 10).mapToObj(c -> "Actor " + (i * 7 + c * 13) % 20_000).collect(Collectors.toList()),
+                                LocalDate.of(2000, 1, 1).plusDays(i % 5000)))
+                        .buffer(10_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+        movieInfoReplica.load().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void replicaComparedToMongo() {
+        assertEquals(MOVIE_INFOS, movieInfoReplica.size());
+        assertEquals(movieInfoRepository.findById("id42").block(), movieInfoReplica.get("id42"));
+        System.out.printf("%d movie infos, %d cast names, about %d bytes a movie info%n",
+                movieInfoReplica.size(), movieInfoReplica.castNameCount(), movieInfoReplica.memoryBytes() / MOVIE_INFOS);
+
+        Random random = new Random(42);
+        long replicaById = p50("replica by id", i -> movieInfoReplica.get("id" + random.nextInt(MOVIE_INFOS)));
+        long mongoById = p50("mongo by id", i -> movieInfoRepository.findById("id" + random.nextInt(MOVIE_INFOS)).block());
+        p50("replica by year", i -> movieInfoReplica.getByYear(1950 + i % 70));
+        p50("mongo by year", i -> movieInfoRepository.findByYear(1950 + i % 70).collectList().block());
+
+        assertTrue(replicaById < mongoById);
+    }
+
+    // RUNS reads after RUNS to warm up, prints the p50 and p99 in microseconds
+    private static long p50(String name, IntConsumer read) {
+        long[] latencies = new long[RUNS];
+        for (int i = -RUNS; i < RUNS; i++) {
+            long start = System.nanoTime();
+            read.accept(i + RUNS);
+            if (i >= 0) {
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-16s p50 %8.1fus  p99 %8.1fus%n", name, latencies[RUNS / 2] / 1000.0, latencies[RUNS * 99 / 100] / 1000.0);
+        return latencies[RUNS / 2];
+    }
+}
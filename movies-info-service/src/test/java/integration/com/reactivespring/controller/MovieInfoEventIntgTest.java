@@ -0,0 +1,118 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+// the events of POST, PUT and DELETE, from the change stream or from the writes depending on the mongo of the test
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MovieInfoEventIntgTest {
+
+    private static final ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>> EVENT = new ParameterizedTypeReference<>() {
+    };
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    WebClient webClient;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+            List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        webClient = WebClient.create("http://localhost:" + port + "/v1/movieinfos");
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void movieInfoEvents() {
+        Flux<ServerSentEvent<MovieInfoEvent>> events = events(null).take(3).cache();
+        events.subscribe();
+        write();
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("INSERT", event.event());
+                    assertEquals("abc", event.data().getMovieInfoId());
+                })
+                .assertNext(event -> {
+                    assertEquals("UPDATE", event.event());
+                    assertEquals("Dark Knight Rises Part 2", event.data().getMovieInfo().getName());
+                })
+                .assertNext(event -> {
+                    assertEquals("DELETE", event.event());
+                    assertNull(event.data().getMovieInfo());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void movieInfoEvents_resume() {
+        Flux<ServerSentEvent<MovieInfoEvent>> events = events(null).take(3).cache();
+        events.subscribe();
+        write();
+
+        // a client that only got the insert before it was disconnected
+        String token = events.blockFirst().id();
+        StepVerifier.create(events(token).take(2))
+                .assertNext(event -> assertEquals("UPDATE", event.event()))
+                .assertNext(event -> assertEquals("DELETE", event.event()))
+                .verifyComplete();
+    }
+
+    private Flux<ServerSentEvent<MovieInfoEvent>> events(String lastEventId) {
+        return webClient.get()
+                .uri("/events")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .headers(headers -> {
+                    if (lastEventId != null) {
+                        headers.set("Last-Event-ID", lastEventId);
+                    }
+                })
+                .retrieve()
+                .bodyToFlux(EVENT)
+                .timeout(Duration.ofSeconds(10));
+    }
+
+    // after a moment for the change stream to be open
+    private void write() {
+        MovieInfo updated = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        Mono.delay(Duration.ofMillis(500))
+                .then(webClient.post().bodyValue(movieInfo).retrieve().toBodilessEntity())
+                .then(webClient.put().uri("/{id}", "abc").bodyValue(updated).retrieve().toBodilessEntity())
+                .then(webClient.delete().uri("/{id}", "abc").retrieve().toBodilessEntity())
+                .block();
+    }
+}
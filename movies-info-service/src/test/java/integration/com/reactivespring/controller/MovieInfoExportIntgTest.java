@@ -0,0 +1,117 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The export benchmark: GET /v1/movieinfos/export of 1M movie infos, prints docs/s, MB/s (gzipped and NDJSON)
+ and the peak heap of the export (the sum of the peaks of the heap pools, the client only counts bytes).
+ Only runs with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MovieInfoExportIntgTest {
+
+    private static final int MOVIE_INFOS = 1_000_000;
+    private static final long MAX_PEAK_HEAP_GROWTH = 128L * 1024 * 1024;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.range(0, MOVIE_INFOS)
+                        .map(i -> new MovieInfo(null, "Movie " + i, 1950 + i % 70,
+                                List.of("Actor " + i % 1000, "Actor " + (i + 1) % 1000), LocalDate.of(2000, 1, 1)))
+                        .buffer(10_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void exportMovieInfos() throws IOException {
+        System.gc();
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans();
+        heapPools.removeIf(pool -> pool.getType() != MemoryType.HEAP);
+        long baseline = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        // the client keeps the gzipped body to check it, it is taken off the peak heap
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(64 * 1024 * 1024);
+        long start = System.nanoTime();
+        WebClient.create("http://localhost:" + port)
+                .get()
+                .uri("/v1/movieinfos/export")
+                .exchangeToMono(response -> {
+                    assertEquals("gzip", response.headers().asHttpHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+                    return response.bodyToFlux(DataBuffer.class)
+                            .doOnNext(buffer -> {
+                                byte[] bytes = new byte[buffer.readableByteCount()];
+                                buffer.read(bytes);
+                                gzipped.write(bytes, 0, bytes.length);
+                                DataBufferUtils.release(buffer);
+                            })
+                            .then();
+                })
+                .block();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long peakGrowth = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum() - baseline - gzipped.size();
+
+        long lines = 0;
+        long ndjsonBytes = 0;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped.toByteArray()))) {
+            byte[] chunk = new byte[64 * 1024];
+            for (int read = in.read(chunk); read >= 0; read = in.read(chunk)) {
+                ndjsonBytes += read;
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] == '\n') {
+                        lines++;
+                    }
+                }
+            }
+        }
+
+        assertEquals(MOVIE_INFOS, lines);
+        System.out.printf("export of %d movie infos : %.1fs, %.0f docs/s, %.1f MB/s gzipped, %.1f MB/s NDJSON, peak heap +%dMB%n",
+                MOVIE_INFOS, seconds, MOVIE_INFOS / seconds, gzipped.size() / seconds / 1e6, ndjsonBytes / seconds / 1e6,
+                peakGrowth / (1024 * 1024));
+        assertTrue(peakGrowth < MAX_PEAK_HEAP_GROWTH, "peak heap grew by " + peakGrowth / (1024 * 1024) + "MB");
+    }
+}
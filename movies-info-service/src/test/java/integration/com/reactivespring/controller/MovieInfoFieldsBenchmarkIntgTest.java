@@ -0,0 +1,105 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The fields= benchmark: the bytes on the wire and the latency of GET /v1/movieinfos (10k movie infos with 10 cast each)
+ and GET /v1/movieinfos/{id} (not cached, the cache only has what was read whole) with fields=name,year against the full read.
+ Only runs with ./gradlew benchmark, MovieInfoFieldsIntgTest checks the projections.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MovieInfoFieldsBenchmarkIntgTest {
+
+    private static final int MOVIE_INFOS = 10_000;
+    private static final int RUNS = 50;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    WebClient webClient;
+
+    @BeforeEach
+    void setUp() {
+        webClient = WebClient.create("http://localhost:" + port);
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.range(0, MOVIE_INFOS)
+                        .map(i -> new MovieInfo("id" + i, "Movie " + i, 1950 + i % 70,
+                                IntStream.range(0, 10).mapToObj(c -> "Actor " + (i + c) % 1000).collect(Collectors.toList()),
+                                LocalDate.of(2000, 1, 1)))
+                        .buffer(1_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void narrowComparedToFullReads() {
+        long fullList = report("list full", "/v1/movieinfos");
+        long narrowList = report("list fields=name,year", "/v1/movieinfos?fields=name,year");
+        long fullById = report("by id full", "/v1/movieinfos/id42");
+        long narrowById = report("by id fields=name,year", "/v1/movieinfos/id42?fields=name,year");
+
+        assertTrue(narrowList < fullList / 2, narrowList + " bytes against " + fullList);
+        assertTrue(narrowById < fullById, narrowById + " bytes against " + fullById);
+    }
+
+    // the body bytes of one response, after printing the p50 and p99 of RUNS reads (RUNS more warm up)
+    private long report(String name, String uri) {
+        long[] latencies = new long[RUNS];
+        long bytes = 0;
+        for (int i = -RUNS; i < RUNS; i++) {
+            long start = System.nanoTime();
+            bytes = read(uri);
+            if (i >= 0) {
+                latencies[i] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-25s %10d bytes  p50 %6dus  p99 %6dus%n",
+                name, bytes, latencies[RUNS / 2] / 1000, latencies[RUNS * 99 / 100] / 1000);
+        return bytes;
+    }
+
+    private long read(String uri) {
+        return webClient.get()
+                .uri(uri)
+                .exchangeToMono(response -> response.bodyToFlux(DataBuffer.class)
+                        .map(buffer -> {
+                            int read = buffer.readableByteCount();
+                            DataBufferUtils.release(buffer);
+                            return (long) read;
+                        })
+                        .reduce(0L, Long::sum))
+                .block();
+    }
+}
@@ -0,0 +1,92 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.List;
+
+// fields= on GET /v1/movieinfos and GET /v1/movieinfos/{id}: only the asked fields are in the JSON, an unknown one is a 400
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MovieInfoFieldsIntgTest {
+
+    private static final String MOVIE_INFO_URL = "/v1/movieinfos";
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        List<MovieInfo> movieInfos = List.of(new MovieInfo("bb", "Batman Begins", 2005,
+                        List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("tdk", "The Dark Knight", 2008,
+                        List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18")));
+        movieInfoRepository.deleteAll()
+                .thenMany(movieInfoRepository.saveAll(movieInfos))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void getAllMovieInfos_fields() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2008&fields=year,name")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].name").isEqualTo("The Dark Knight")
+                .jsonPath("$[0].year").isEqualTo(2008)
+                .jsonPath("$[0].movieInfoId").doesNotExist()
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].release_date").doesNotExist();
+    }
+
+    @Test
+    void getMovieInfoById_fields() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}?fields=movieInfoId,cast", "bb")
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBody()
+                .jsonPath("$.movieInfoId").isEqualTo("bb")
+                .jsonPath("$.cast[1]").isEqualTo("Michael Cane")
+                .jsonPath("$.name").doesNotExist()
+                .jsonPath("$.year").doesNotExist();
+    }
+
+    @Test
+    void fields_unknown() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?fields=name,rating")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("unknown fields rating, the fields are movieInfoId,name,year,cast,release_date,version");
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}?fields=rating", "bb")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+}
@@ -0,0 +1,77 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoUpdate;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ The PATCH benchmark: prints the p50 and p99 of 500 PUT and 500 PATCH of one movie info (after 100 of each to warm up),
+ PATCH writes one field in one findAndModify. Only runs with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MovieInfoPatchBenchmarkIntgTest {
+
+    private static final String MOVIE_INFO_URL = "/v1/movieinfos";
+    private static final int RUNS = 500;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+            List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @BeforeEach
+    void setUp() {
+        movieInfoRepository.deleteAll()
+                .then(movieInfoRepository.save(movieInfo))
+                .block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void patchComparedToPut() {
+        MovieInfoUpdate update = new MovieInfoUpdate(null, 2012, null, null, null);
+        long[] put = new long[RUNS];
+        long[] patch = new long[RUNS];
+        for (int i = -100; i < RUNS; i++) {
+            long start = System.nanoTime();
+            webTestClient.put().uri(MOVIE_INFO_URL + "/{id}", "abc").bodyValue(movieInfo)
+                    .exchange().expectStatus().is2xxSuccessful();
+            long middle = System.nanoTime();
+            webTestClient.patch().uri(MOVIE_INFO_URL + "/{id}", "abc").bodyValue(update)
+                    .exchange().expectStatus().is2xxSuccessful();
+            long end = System.nanoTime();
+            if (i >= 0) {
+                put[i] = middle - start;
+                patch[i] = end - middle;
+            }
+        }
+        Arrays.sort(put);
+        Arrays.sort(patch);
+        System.out.printf("PUT p50 %dus p99 %dus, PATCH p50 %dus p99 %dus%n",
+                put[RUNS / 2] / 1000, put[RUNS * 99 / 100] / 1000, patch[RUNS / 2] / 1000, patch[RUNS * 99 / 100] / 1000);
+    }
+}
@@ -0,0 +1,91 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The NDJSON stream benchmark: 1M movie infos read by a client that decodes them as they arrive, the heap of the
+ server (the same JVM, after a System.gc() every 100k) must not grow by more than 64MB. Only runs with ./gradlew benchmark,
+ MovieInfoStreamIntgTest checks the stream and its cancel.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MovieInfoStreamBenchmarkIntgTest {
+
+    private static final int MOVIE_INFOS = 1_000_000;
+    // the documents are ~150 bytes of JSON each, a response held in memory would be well over 100MB
+    private static final long MAX_HEAP_GROWTH = 64L * 1024 * 1024;
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.range(0, MOVIE_INFOS)
+                        .map(i -> new MovieInfo(null, "Movie " + i, 1950 + i % 70,
+                                List.of("Actor " + i % 1000, "Actor " + (i + 1) % 1000), LocalDate.of(2000, 1, 1)))
+                        .buffer(10_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void streamMovieInfos_boundedHeap() {
+        long baseline = usedHeapAfterGc();
+        AtomicLong maxUsed = new AtomicLong(baseline);
+
+        // the client decodes each line as it arrives so only the server can hold the movie infos
+        Long count = WebClient.create("http://localhost:" + port)
+                .get()
+                .uri("/v1/movieinfos")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(MovieInfo.class)
+                .index()
+                .doOnNext(indexed -> {
+                    if (indexed.getT1() % 100_000 == 0) {
+                        maxUsed.accumulateAndGet(usedHeapAfterGc(), Math::max);
+                    }
+                })
+                .count()
+                .block();
+
+        assertEquals(MOVIE_INFOS, count);
+        long growth = maxUsed.get() - baseline;
+        assertTrue(growth < MAX_HEAP_GROWTH, "heap grew by " + growth / (1024 * 1024) + "MB while streaming");
+    }
+
+    private static long usedHeapAfterGc() {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,110 @@
+package com.reactivespring.controller;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ GET /v1/movieinfos as NDJSON: every movie info of the year comes, and a client that disconnects early closes
+ the mongo cursor: the driver sends a killCursors for it.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class MovieInfoStreamIntgTest {
+
+    // a few MB of NDJSON, more than the socket buffers take in before the client is gone
+    private static final int MOVIE_INFOS = 50_000;
+    private static final AtomicInteger killCursors = new AtomicInteger();
+
+    @TestConfiguration
+    static class CountKillCursors {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer countKillCursors() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (event.getCommandName().equals("killCursors")) {
+                        killCursors.incrementAndGet();
+                    }
+                }
+            });
+        }
+    }
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // all of them but one in 1990
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.range(0, MOVIE_INFOS)
+                        .map(i -> new MovieInfo(null, "Movie " + i, i < MOVIE_INFOS - 1 ? 1990 : 1991,
+                                List.of("Actor " + i % 100), LocalDate.of(2000, 1, 1)))
+                        .buffer(10_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+        killCursors.set(0);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void streamMovieInfos() {
+        List<MovieInfo> movieInfos = stream("/v1/movieinfos?year=1990").collectList().block();
+
+        assertEquals(MOVIE_INFOS - 1, movieInfos.size());
+        assertTrue(movieInfos.stream().allMatch(movieInfo -> movieInfo.getYear() == 1990));
+    }
+
+    @Test
+    void streamMovieInfos_cancel() throws InterruptedException {
+        List<MovieInfo> first = stream("/v1/movieinfos?year=1990").take(10).collectList().block();
+
+        assertEquals(10, first.size());
+        // the server sees the disconnect and cancels the cursor a moment later
+        for (int i = 0; i < 50 && killCursors.get() == 0; i++) {
+            Thread.sleep(100);
+        }
+        assertTrue(killCursors.get() > 0, "no killCursors after the cancel");
+        // and it stays usable
+        assertEquals(1, stream("/v1/movieinfos?year=1991").count().block());
+    }
+
+    private Flux<MovieInfo> stream(String uri) {
+        return WebClient.create("http://localhost:" + port)
+                .get()
+                .uri(uri)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .retrieve()
+                .bodyToFlux(MovieInfo.class);
+    }
+}
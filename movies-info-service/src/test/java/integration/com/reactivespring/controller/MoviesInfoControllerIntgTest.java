@@ -1,6 +1,11 @@
 package com.reactivespring.controller;
 
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.cache.MovieInfoIdFilter;
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoUpdate;
 import com.reactivespring.repository.MovieInfoRepository;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -8,17 +13,23 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
 import java.time.LocalDate;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT) // So that this test use different port than the main one
+// the test is the only writer of the embedded (standalone) mongo, the id filter is on and rebuilt after each setUp
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, // So that this test use different port than the main one
+        properties = "movieinfo.id-filter.single-writer=true")
 @ActiveProfiles("test") // So that this uses different port other than main mongo one
 @AutoConfigureWebTestClient
 class MoviesInfoControllerIntgTest {
@@ -27,6 +38,12 @@ class MoviesInfoControllerIntgTest {
     @Autowired
     MovieInfoRepository movieInfoRepository;
 
+    @Autowired
+    MovieInfoCache movieInfoCache;
+
+    @Autowired
+    MovieInfoIdFilter movieInfoIdFilter;
+
     @Autowired
     WebTestClient webTestClient;
 
@@ -44,6 +61,9 @@ class MoviesInfoControllerIntgTest {
                 .deleteAll()
                 .thenMany(movieInfoRepository.saveAll(movieInfos))
                 .blockLast(); // blockLast because all the method are asynchronous we don't want to start findAll before saving all the date
+        // the data above was saved without going through the service
+        movieInfoCache.invalidateAll();
+        movieInfoIdFilter.rebuild().block();
     }
 
     @Test
@@ -95,6 +115,86 @@ class MoviesInfoControllerIntgTest {
                 .hasSize(1);
     }
 
+    @Test
+    void getMovieInfoPages() {
+        // 2 mongo generated ObjectIds and "abc", in 2 pages
+        MovieInfoPage first = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?size=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfoPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(first);
+        assertEquals(2, first.getMovieInfos().size());
+        assertNotNull(first.getNextCursor());
+
+        MovieInfoPage last = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?size=2&cursor={cursor}", first.getNextCursor())
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody(MovieInfoPage.class)
+                .returnResult()
+                .getResponseBody();
+        assertNotNull(last);
+        assertEquals(1, last.getMovieInfos().size());
+        assertNull(last.getNextCursor());
+
+        Set<String> ids = new HashSet<>();
+        first.getMovieInfos().forEach(movieInfo -> ids.add(movieInfo.getMovieInfoId()));
+        last.getMovieInfos().forEach(movieInfo -> ids.add(movieInfo.getMovieInfoId()));
+        assertEquals(3, ids.size());
+    }
+
+    @Test
+    void getMovieInfoPages_byYear() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012&size=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.movieInfos[0].movieInfoId").isEqualTo("abc")
+                .jsonPath("$.nextCursor").doesNotExist();
+    }
+
+    @Test
+    void importMovieInfos() {
+        String body = "{\"name\":\"Man of Steel\",\"year\":2013,\"cast\":[\"Henry Cavill\"],\"release_date\":\"2013-06-14\"}\n"
+                + "{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012}\n" // exists already
+                + "{\"name\":\"\",\"year\":2013}\n"
+                + "{\"movieInfoId\":\"def\",\"name\":\"Batman v Superman\",\"year\":2016}\n";
+
+        List<MovieInfoImportResult> results = webTestClient.post()
+                .uri(MOVIE_INFO_URL + "/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue(body)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfoImportResult.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(results);
+        assertEquals(4, results.stream().mapToInt(MovieInfoImportResult::getReceived).sum());
+        assertEquals(2, results.stream().mapToInt(MovieInfoImportResult::getInserted).sum());
+        Set<Long> failedLines = new HashSet<>();
+        results.forEach(result -> result.getFailures().forEach(failure -> failedLines.add(failure.getLine())));
+        assertEquals(Set.of(2L, 3L), failedLines);
+
+        // the unordered insert went past the duplicate
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "def")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+    }
+
     @Test
     void getMovieInfoById() {
         String id = "abc";
@@ -142,6 +242,124 @@ class MoviesInfoControllerIntgTest {
                 });
     }
 
+    @Test
+    void patchMovieInfo() {
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue(new MovieInfoUpdate(null, 2013, null, null, null))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.year").isEqualTo(2013)
+                .jsonPath("$.version").isEqualTo(1);
+
+        // a second client still at version 0
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue(new MovieInfoUpdate("Dark Knight Rises Part 2", null, null, null, 0L))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409);
+    }
+
+    @Test
+    void conditionalRequests() {
+        String eTag = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertEquals("\"0\"", eTag);
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        webTestClient.put()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // the client that still has "0"
+        webTestClient.put()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+        webTestClient.delete()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+
+        webTestClient.delete()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isNoContent();
+    }
+
+    @Test
+    void conditionalRequests_year() {
+        String eTag = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+
+        webTestClient.patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue(new MovieInfoUpdate("Dark Knight Rises Part 2", null, null, null, null))
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful();
+    }
+
     @Test
     void deleteMovieInfo() {
         String id = "abc";
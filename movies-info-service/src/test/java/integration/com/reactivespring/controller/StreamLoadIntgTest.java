@@ -0,0 +1,129 @@
+package com.reactivespring.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The /stream load test: 10k concurrent SSE connections on the one shared interval, opened 250 at a time.
+ Prints how long connecting took, the heap used with all of them connected and the spread of one tick
+ (the time between the first and the last connection getting it), checks that every connection got it
+ and that the server counted 10k subscribers. Needs about 20k file descriptors (ulimit -n),
+ so it only runs with ./gradlew benchmark.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "stream.interval=1s", "stream.replay-size=1"})
+@ActiveProfiles("test")
+class StreamLoadIntgTest {
+
+    private static final int CONNECTIONS = 10_000;
+    private static final Pattern TICK = Pattern.compile("data:(\\d+)\n");
+
+    @LocalServerPort
+    int port;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Test
+    void tenThousandStreams() {
+        ConnectionProvider connections = ConnectionProvider.builder("stream-load")
+                .maxConnections(CONNECTIONS)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        LoopResources loops = LoopResources.create("stream-load", 4, true);
+        HttpClient client = HttpClient.create(connections).runOn(loops).baseUrl("http://localhost:" + port)
+                .headers(headers -> headers.set("Accept", "text/event-stream"));
+        AtomicLongArray received = new AtomicLongArray(CONNECTIONS); // when each connection got the measured tick
+        long[] measuredTick = {-1};
+        String[] tails = new String[CONNECTIONS]; // the end of what each connection got so far
+        Arrays.fill(tails, "");
+
+        long start = System.nanoTime();
+        Disposable streams = Flux.range(0, CONNECTIONS)
+                .buffer(250) // not all at once, beyond the accept backlog connections get reset
+                .delayElements(Duration.ofMillis(50))
+                .flatMapIterable(batch -> batch)
+                .flatMap(i -> client.get()
+                        .uri("/stream")
+                        .responseContent()
+                        .asString()
+                        .doOnNext(chunk -> {
+                            // "data:", the tick and the blank line after it can come in different chunks
+                            String text = tails[i] + chunk;
+                            long tick = measuredTick[0];
+                            if (tick >= 0 && received.get(i) == 0 && text.contains("data:" + tick + "\n")) {
+                                received.set(i, System.nanoTime());
+                            }
+                            tails[i] = text.substring(Math.max(0, text.length() - 32));
+                        }), CONNECTIONS)
+                .subscribe();
+        try {
+            Mono.fromCallable(() -> meterRegistry.get("stream.subscribers").gauge().value())
+                    .filter(subscribers -> subscribers >= CONNECTIONS)
+                    .repeatWhenEmpty(repeat -> repeat.delayElements(Duration.ofMillis(50)))
+                    .block(Duration.ofMinutes(2));
+            long connected = System.nanoTime() - start;
+            System.gc();
+            long heap = Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+
+            // a tick a bit ahead of the current one, every connection is already waiting for it
+            measuredTick[0] = currentTick() + 2;
+            Mono.delay(Duration.ofSeconds(4)).block();
+
+            long[] arrivals = new long[CONNECTIONS];
+            for (int i = 0; i < CONNECTIONS; i++) {
+                arrivals[i] = received.get(i);
+            }
+            arrivals = Arrays.stream(arrivals).filter(time -> time != 0).sorted().toArray();
+            System.out.printf("%d connections in %dms, heap %dMB, tick %d reached %d of them, spread p50 %dms p99 %dms max %dms%n",
+                    CONNECTIONS, connected / 1_000_000, heap / (1024 * 1024), measuredTick[0], arrivals.length,
+                    (arrivals[arrivals.length / 2] - arrivals[0]) / 1_000_000,
+                    (arrivals[arrivals.length * 99 / 100] - arrivals[0]) / 1_000_000,
+                    (arrivals[arrivals.length - 1] - arrivals[0]) / 1_000_000);
+
+            assertEquals(CONNECTIONS, arrivals.length);
+            assertTrue(meterRegistry.get("stream.lag.max").gauge().value() < 64);
+        } finally {
+            streams.dispose();
+            connections.disposeLater().block();
+            loops.disposeLater().block();
+        }
+    }
+
+    // the replay (stream.replay-size=1) starts a new connection with the last tick, not from the full pool of the load
+    private long currentTick() {
+        return HttpClient.create().baseUrl("http://localhost:" + port)
+                .headers(headers -> headers.set("Accept", "text/event-stream"))
+                .get()
+                .uri("/stream")
+                .responseContent()
+                .asString()
+                .scan("", String::concat) // an event can come in more than one chunk
+                .map(TICK::matcher)
+                .filter(Matcher::find)
+                .next()
+                .map(matcher -> Long.parseLong(matcher.group(1)))
+                .block(Duration.ofSeconds(5));
+    }
+}
@@ -0,0 +1,152 @@
+package com.reactivespring.repository;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.reactivespring.domain.MovieInfo;
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.boot.test.autoconfigure.data.mongo.DataMongoTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import java.lang.reflect.Method;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/*
+ Every query method of MovieInfoRepository is run once, the commands it sends to mongo are recorded and explained:
+ a COLLSCAN in a winning plan fails the test, a new derived query without an index fails it too.
+ */
+@DataMongoTest
+@ActiveProfiles("test")
+class MovieInfoQueryPlanIntgTest {
+
+    private static final Set<String> QUERY_COMMANDS = Set.of("find", "count", "delete", "update", "findAndModify", "aggregate");
+    private static final List<Document> commands = new CopyOnWriteArrayList<>();
+
+    @TestConfiguration
+    static class RecordCommands {
+
+        @Bean
+        MongoClientSettingsBuilderCustomizer recordCommands() {
+            return settings -> settings.addCommandListener(new CommandListener() {
+                @Override
+                public void commandStarted(CommandStartedEvent event) {
+                    if (QUERY_COMMANDS.contains(event.getCommandName())) {
+                        commands.add(Document.parse(event.getCommand().toJson()));
+                    }
+                }
+            });
+        }
+    }
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        // with an empty collection every plan is an EOF
+        List<MovieInfo> movieInfos = List.of(new MovieInfo(null, "Batman Begins", 2005,
+                        List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo(null, "The Dark Knight", 2008,
+                        List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("abc", "Dark Knight Rises", 2012,
+                        List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        movieInfoRepository.saveAll(movieInfos).blockLast();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void indexes() {
+        Set<String> indexed = reactiveMongoTemplate.indexOps(MovieInfo.class).getIndexInfo()
+                .map(IndexInfo::getName)
+                .collect(Collectors.toSet())
+                .block();
+
+        assertTrue(indexed.containsAll(Set.of("_id_", "year_id", "name", "cast")), indexed.toString());
+    }
+
+    @Test
+    void queryMethodsUseAnIndex() throws Exception {
+        for (Method method : MovieInfoRepository.class.getDeclaredMethods()) {
+            commands.clear();
+            Flux.from((Publisher<?>) method.invoke(movieInfoRepository, sampleArguments(method))).blockLast();
+
+            assertFalse(commands.isEmpty(), method.getName() + " sent no query");
+            for (Document command : commands) {
+                Document explain = new Document("explain", withoutSessionFields(command)).append("verbosity", "queryPlanner");
+                Document plan = reactiveMongoTemplate.executeCommand(explain).block();
+                List<String> stages = new ArrayList<>();
+                collectStages(plan.get("queryPlanner", Document.class).get("winningPlan"), stages);
+
+                assertFalse(stages.contains("COLLSCAN"), method.getName() + " is a collection scan : " + stages);
+            }
+        }
+    }
+
+    // an id that isn't there, so deleteByMovieInfoId deletes nothing
+    private static Object[] sampleArguments(Method method) {
+        Class<?>[] types = method.getParameterTypes();
+        Object[] arguments = new Object[types.length];
+        for (int i = 0; i < types.length; i++) {
+            if (types[i] == Integer.class || types[i] == int.class) {
+                arguments[i] = 2005;
+            } else if (types[i] == Long.class || types[i] == long.class) {
+                arguments[i] = 0L;
+            } else if (types[i] == String.class) {
+                arguments[i] = "xyz";
+            } else {
+                fail("no sample argument for a " + types[i].getSimpleName() + " in " + method.getName());
+            }
+        }
+        return arguments;
+    }
+
+    // the session and cluster time the driver adds to a command aren't accepted inside an explain
+    private static Document withoutSessionFields(Document command) {
+        Document explained = new Document();
+        command.forEach((key, value) -> {
+            if (!key.startsWith("$") && !key.equals("lsid") && !key.equals("txnNumber")) {
+                explained.append(key, value);
+            }
+        });
+        return explained;
+    }
+
+    // the stage of the plan and of all its input stages (inputStage, inputStages, queryPlan...)
+    private static void collectStages(Object plan, List<String> stages) {
+        if (plan instanceof Document) {
+            Document stage = (Document) plan;
+            if (stage.get("stage") instanceof String) {
+                stages.add(stage.getString("stage"));
+            }
+            stage.values().forEach(value -> collectStages(value, stages));
+        } else if (plan instanceof List) {
+            ((List<?>) plan).forEach(value -> collectStages(value, stages));
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.reactivespring.repository;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoUpdate;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -102,6 +103,154 @@ class MovieInfoRepositoryIntgTest {
                 .verifyComplete();
     }
 
+    @Test
+    void deleteByMovieInfoId() {
+        StepVerifier.create(movieInfoRepository.deleteByMovieInfoId("abc"))
+                .expectNext(1L)
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.deleteByMovieInfoId("abc"))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    void findAllIds() {
+        Flux<MovieInfo> movieInfoFlux = movieInfoRepository.findAllIds().log();
+
+        StepVerifier.create(movieInfoFlux)
+                .thenConsumeWhile(movieInfo -> movieInfo.getMovieInfoId() != null && movieInfo.getName() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    void findPageAfter() {
+        // "abc" is a String id, the 2 others are ObjectIds which mongo sorts after every String
+        List<MovieInfo> all = movieInfoRepository.findPageAfter(null, null, 10).collectList().block();
+        assertEquals(3, all.size());
+        assertEquals("abc", all.get(0).getMovieInfoId());
+
+        StepVerifier.create(movieInfoRepository.findPageAfter(null, "abc", 10))
+                .expectNextCount(2)
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.findPageAfter(null, all.get(1).getMovieInfoId(), 10))
+                .expectNext(all.get(2))
+                .verifyComplete();
+    }
+
+    @Test
+    void updateFields() {
+        StepVerifier.create(movieInfoRepository.updateFields("abc", new MovieInfoUpdate(null, 2013, null, null, null)))
+                .assertNext(movieInfo -> {
+                    assertEquals(2013, movieInfo.getYear());
+                    assertEquals("Dark Knight Rises", movieInfo.getName()); // not in the update
+                    assertEquals(1L, movieInfo.getVersion());
+                })
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoRepository.updateFields("abc", new MovieInfoUpdate("Dark Knight Rises Part 2", null, null, null, 1L)))
+                .assertNext(movieInfo -> assertEquals(2L, movieInfo.getVersion()))
+                .verifyComplete();
+
+        // the version moved on
+        StepVerifier.create(movieInfoRepository.updateFields("abc", new MovieInfoUpdate(null, 2014, null, null, 1L)))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.updateFields("def", new MovieInfoUpdate(null, 2014, null, null, null)))
+                .verifyComplete();
+    }
+
+    @Test
+    void updateFields_versionZeroMatchesMissingVersion() {
+        StepVerifier.create(movieInfoRepository.updateFields("abc", new MovieInfoUpdate(null, 2013, null, null, 0L)))
+                .assertNext(movieInfo -> assertEquals(1L, movieInfo.getVersion()))
+                .verifyComplete();
+    }
+
+    @Test
+    void replaceFields() {
+        MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012, List.of("Christan Bale"), null);
+
+        StepVerifier.create(movieInfoRepository.replaceFields("abc", movieInfo, 0L, false))
+                .assertNext(replaced -> {
+                    assertEquals("Dark Knight Rises Part 2", replaced.getName());
+                    assertNull(replaced.getRelease_date()); // null in movieInfo
+                    assertEquals(1L, replaced.getVersion());
+                })
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.replaceFields("abc", movieInfo, 0L, false))
+                .verifyComplete();
+
+        // the upsert of POST with an id
+        StepVerifier.create(movieInfoRepository.replaceFields("def", movieInfo, null, true))
+                .assertNext(inserted -> {
+                    assertEquals("def", inserted.getMovieInfoId());
+                    assertEquals(1L, inserted.getVersion());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findVersions() {
+        movieInfoRepository.updateFields("abc", new MovieInfoUpdate(null, 2012, null, null, null)).block();
+
+        StepVerifier.create(movieInfoRepository.findVersionById("abc"))
+                .expectNext(1L)
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findVersionById("def"))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findVersions(2012))
+                .assertNext(movieInfo -> {
+                    assertEquals("abc", movieInfo.getMovieInfoId());
+                    assertEquals(1L, movieInfo.getVersion());
+                    assertNull(movieInfo.getName());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findFields() {
+        StepVerifier.create(movieInfoRepository.findFields(2012, List.of("name")))
+                .assertNext(movieInfo -> {
+                    assertEquals("abc", movieInfo.getMovieInfoId());
+                    assertEquals("Dark Knight Rises", movieInfo.getName());
+                    assertNull(movieInfo.getYear());
+                    assertNull(movieInfo.getCast());
+                })
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findFieldsById("abc", List.of("cast", "year")))
+                .assertNext(movieInfo -> {
+                    assertEquals(2, movieInfo.getCast().size());
+                    assertEquals(2012, movieInfo.getYear());
+                    assertNull(movieInfo.getName());
+                    assertNull(movieInfo.getRelease_date());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void findByWordPrefixes() {
+        StepVerifier.create(movieInfoRepository.findByWordPrefixes(List.of("dark", "har"), 10))
+                .assertNext(movieInfo -> assertEquals("abc", movieInfo.getMovieInfoId()))
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.findByWordPrefixes(List.of("bale"), 10))
+                .expectNextCount(3)
+                .verifyComplete();
+        // the start of a word only
+        StepVerifier.create(movieInfoRepository.findByWordPrefixes(List.of("night"), 10))
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteAtVersion() {
+        StepVerifier.create(movieInfoRepository.deleteAtVersion("abc", 1L))
+                .expectNext(0L)
+                .verifyComplete();
+        StepVerifier.create(movieInfoRepository.deleteAtVersion("abc", 0L))
+                .expectNext(1L)
+                .verifyComplete();
+    }
+
     @Test
     void findByYear() {
         int year = 2005;
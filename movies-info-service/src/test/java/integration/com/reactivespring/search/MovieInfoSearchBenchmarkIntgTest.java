@@ -0,0 +1,157 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/*
+ The search benchmark: 1M movie infos, names of 1 to 4 words out of about 60k and 5 cast members out of 200k,
+ prints the p50 and p99 of the index and of the word prefix regexes of mongo (a collection scan, fewer runs)
+ for whole words, prefixes and two words; typos are the index only. Only runs with ./gradlew benchmark,
+ MovieInfoSearchIntgTest checks the results.
+ */
+@Tag("benchmark")
+@SpringBootTest(properties = "movieinfo.search.enabled=false")
+@ActiveProfiles("test")
+class MovieInfoSearchBenchmarkIntgTest {
+
+    private static final int MOVIE_INFOS = 1_000_000;
+    private static final int QUERIES = 200;
+    private static final String[] SYLLABLES = {"ka", "to", "ri", "ma", "ne", "lo", "sa", "vi", "du", "ber", "gan", "tor",
+            "mel", "shi", "an", "el", "or", "qua", "zen", "fa", "po", "li", "mu", "ste", "dra", "ko", "ve", "ni", "ja", "rus",
+            "bel", "the", "ox", "ur", "wy", "cla", "pe", "hi", "go", "ta"};
+
+    @Autowired
+    ReactiveMongoTemplate reactiveMongoTemplate;
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    MovieInfoSearchIndex movieInfoSearchIndex;
+
+    @BeforeEach
+    void setUp() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class)
+                .thenMany(Flux.fromIterable(movieInfos())
+                        .buffer(10_000)
+                        .concatMap(movieInfos -> reactiveMongoTemplate.insertAll(movieInfos).then()))
+                .blockLast();
+        movieInfoSearchIndex.load().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        reactiveMongoTemplate.dropCollection(MovieInfo.class).block();
+    }
+
+    @Test
+    void indexComparedToMongo() {
+        assertEquals(MOVIE_INFOS, movieInfoSearchIndex.size());
+        System.out.printf("%d movie infos, %d terms%n", movieInfoSearchIndex.size(), movieInfoSearchIndex.termCount());
+        Random random = new Random(7);
+        List<String> words = new ArrayList<>();
+        List<String> prefixes = new ArrayList<>();
+        List<String> twoWords = new ArrayList<>();
+        List<String> typos = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            MovieInfo movieInfo = movieInfoRepository.findById("id" + random.nextInt(MOVIE_INFOS)).block();
+            List<String> name = MovieInfoSearchIndex.tokens(movieInfo.getName());
+            String word = name.get(0);
+            words.add(word);
+            prefixes.add(word.substring(0, Math.min(3, word.length())));
+            twoWords.add(name.size() > 1 ? name.get(0) + " " + name.get(1) : word + " " + movieInfo.getCast().get(0));
+            // the second and third letters of the longest word swapped
+            List<String> all = new ArrayList<>(name);
+            movieInfo.getCast().forEach(castName -> all.addAll(MovieInfoSearchIndex.tokens(castName)));
+            char[] letters = all.stream().max(Comparator.comparingInt(String::length)).orElseThrow().toCharArray();
+            char swapped = letters[1];
+            letters[1] = letters[2];
+            letters[2] = swapped;
+            typos.add(new String(letters));
+        }
+
+        long indexWord = p50("index word", words, 20, q -> movieInfoSearchIndex.search(q, 20));
+        p50("index prefix", prefixes, 20, q -> movieInfoSearchIndex.search(q, 20));
+        p50("index two words", twoWords, 20, q -> movieInfoSearchIndex.search(q, 20));
+        p50("index typo", typos, 20, q -> movieInfoSearchIndex.search(q, 20));
+        long mongoWord = p50("mongo word", words, 1, this::mongo);
+        p50("mongo prefix", prefixes, 1, this::mongo);
+        p50("mongo two words", twoWords, 1, this::mongo);
+
+        assertTrue(indexWord < mongoWord);
+    }
+
+    private void mongo(String q) {
+        movieInfoRepository.findByWordPrefixes(MovieInfoSearchIndex.tokens(q), 20).collectList().block();
+    }
+
+    // every query rounds times after one warm up round, prints the p50 and p99 in microseconds
+    private static long p50(String name, List<String> queries, int rounds, Consumer<String> search) {
+        queries.forEach(search);
+        long[] latencies = new long[queries.size() * rounds];
+        int i = 0;
+        for (int round = 0; round < rounds; round++) {
+            for (String q : queries) {
+                long start = System.nanoTime();
+                search.accept(q);
+                latencies[i++] = System.nanoTime() - start;
+            }
+        }
+        Arrays.sort(latencies);
+        System.out.printf("%-16s p50 %10.1fus  p99 %10.1fus%n", name,
+                latencies[latencies.length / 2] / 1000.0, latencies[latencies.length * 99 / 100] / 1000.0);
+        return latencies[latencies.length / 2];
+    }
+
+    static List<MovieInfo> movieInfos() {
+        Random random = new Random(42);
+        List<MovieInfo> movieInfos = new ArrayList<>(MOVIE_INFOS);
+        for (int i = 0; i < MOVIE_INFOS; i++) {
+            StringBuilder name = new StringBuilder();
+            for (int word = random.nextInt(4); word >= 0; word--) {
+                name.append(capitalized(word(random, 60_000))).append(word > 0 ? " " : "");
+            }
+            List<String> cast = new ArrayList<>(5);
+            for (int c = 0; c < 5; c++) {
+                int actor = random.nextInt(200_000);
+                cast.add(capitalized(word(new Random(actor), 1_000)) + " " + capitalized(word(new Random(-actor - 1), 20_000)));
+            }
+            movieInfos.add(new MovieInfo("id" + i, name.toString(), 1950 + i % 70, cast, null));
+        }
+        return movieInfos;
+    }
+
+    // one of about words words, the small ones more often
+    private static String word(Random random, int words) {
+        int n = (int) Math.pow(words, random.nextDouble());
+        StringBuilder word = new StringBuilder();
+        do {
+            word.append(SYLLABLES[n % SYLLABLES.length]);
+            n /= SYLLABLES.length;
+        } while (n > 0);
+        return word.toString();
+    }
+
+    private static String capitalized(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
@@ -0,0 +1,111 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/*
+ GET /v1/movieinfos/search over the loaded index: the ranking, a typo, a cast member and a movie info added after the load.
+ The index is loaded by the test, not when the application is ready, so it has what setUp saved.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "movieinfo.search.enabled=false")
+@ActiveProfiles("test")
+@AutoConfigureWebTestClient
+class MovieInfoSearchIntgTest {
+
+    private static final String SEARCH_URL = "/v1/movieinfos/search?q={q}";
+
+    @Autowired
+    MovieInfoRepository movieInfoRepository;
+
+    @Autowired
+    MovieInfoSearchIndex movieInfoSearchIndex;
+
+    @Autowired
+    WebTestClient webTestClient;
+
+    @BeforeEach
+    void setUp() {
+        List<MovieInfo> movieInfos = List.of(new MovieInfo("bb", "Batman Begins", 2005,
+                        List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("tdk", "The Dark Knight", 2008,
+                        List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("dkr", "Dark Knight Rises", 2012,
+                        List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")));
+        movieInfoRepository.deleteAll()
+                .thenMany(movieInfoRepository.saveAll(movieInfos))
+                .blockLast();
+        movieInfoSearchIndex.load().block();
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieInfoRepository.deleteAll().block();
+    }
+
+    @Test
+    void search_ranked() {
+        // both words in both names, the shortest name first
+        assertEquals(List.of("tdk", "dkr"), search("dark knight"));
+    }
+
+    @Test
+    void search_typoAndCast() {
+        assertEquals(List.of("bb"), search("batmna"));
+        assertEquals(List.of("tdk"), search("heath"));
+    }
+
+    @Test
+    void search_followsWrites() {
+        MovieInfo movieInfo = new MovieInfo(null, "Man of Steel", 2013,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2013-06-14"));
+
+        MovieInfo saved = webTestClient.post()
+                .uri("/v1/movieinfos")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isCreated()
+                .expectBody(MovieInfo.class)
+                .returnResult()
+                .getResponseBody();
+
+        assertEquals(List.of(saved.getMovieInfoId()), search("steel"));
+    }
+
+    @Test
+    void search_noLetters() {
+        webTestClient.get()
+                .uri(SEARCH_URL, "!!")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
+    private List<String> search(String q) {
+        return webTestClient.get()
+                .uri(SEARCH_URL, q)
+                .exchange()
+                .expectStatus()
+                .isOk()
+                .expectBodyList(MovieInfo.class)
+                .returnResult()
+                .getResponseBody()
+                .stream()
+                .map(MovieInfo::getMovieInfoId)
+                .collect(Collectors.toList());
+    }
+}
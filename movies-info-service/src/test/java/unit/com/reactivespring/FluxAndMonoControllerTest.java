@@ -1,10 +1,12 @@
 package com.reactivespring;
 
 import com.reactivespring.controller.FluxAndMonoController;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.test.StepVerifier;
@@ -16,6 +18,7 @@ import static org.junit.jupiter.api.Assertions.*;
 // WebFluxTest will give access to the end points of the controller class
 @WebFluxTest(controllers = FluxAndMonoController.class)
 @AutoConfigureWebTestClient
+@Import(SimpleMeterRegistry.class) // the stream metrics
 class FluxAndMonoControllerTest {
 
     @Autowired
@@ -95,4 +98,28 @@ class FluxAndMonoControllerTest {
                 .thenCancel()
                 .verify();
     }
+
+    @Test
+    void streamSubscribers() {
+        Flux<Long> flux = webTestClient
+                .get()
+                .uri("/stream")
+                .exchange()
+                .returnResult(Long.class)
+                .getResponseBody();
+
+        StepVerifier.create(flux)
+                .expectNextCount(1)
+                .then(() -> webTestClient
+                        .get()
+                        .uri("/stream/subscribers")
+                        .exchange()
+                        .expectStatus()
+                        .is2xxSuccessful()
+                        .expectBody()
+                        .jsonPath("$.length()").isEqualTo(1)
+                        .jsonPath("$[0].lag").isNumber())
+                .thenCancel()
+                .verify();
+    }
 }
\ No newline at end of file
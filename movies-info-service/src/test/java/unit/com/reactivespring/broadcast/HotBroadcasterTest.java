@@ -0,0 +1,93 @@
+package com.reactivespring.broadcast;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HotBroadcasterTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    Sinks.Many<Integer> source = Sinks.many().multicast().directBestEffort();
+
+    HotBroadcaster<Integer> broadcaster(int replaySize, int queueSize, HotBroadcaster.Overflow overflow) {
+        return new HotBroadcaster<>("test", source.asFlux(), replaySize, queueSize, overflow, meterRegistry);
+    }
+
+    @Test
+    void oneSubscriptionToTheSource() {
+        AtomicInteger subscriptions = new AtomicInteger();
+        HotBroadcaster<Long> broadcaster = new HotBroadcaster<>("test", Flux.interval(java.time.Duration.ofMillis(10))
+                .doOnSubscribe(s -> subscriptions.incrementAndGet()), 4, 16, HotBroadcaster.Overflow.SHED_OLDEST, meterRegistry);
+
+        Flux.merge(broadcaster.flux().take(3), broadcaster.flux().take(3), broadcaster.flux().take(3)).blockLast();
+
+        assertEquals(1, subscriptions.get());
+        broadcaster.dispose();
+    }
+
+    @Test
+    void replay() {
+        HotBroadcaster<Integer> broadcaster = broadcaster(2, 16, HotBroadcaster.Overflow.SHED_OLDEST);
+        StepVerifier.create(broadcaster.flux().take(3))
+                .then(() -> {
+                    source.tryEmitNext(1);
+                    source.tryEmitNext(2);
+                    source.tryEmitNext(3);
+                })
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+
+        // a late subscriber starts with the last 2
+        StepVerifier.create(broadcaster.flux().take(2))
+                .expectNext(2, 3)
+                .verifyComplete();
+    }
+
+    @Test
+    void slowSubscriberIsShed() {
+        HotBroadcaster<Integer> broadcaster = broadcaster(1, 2, HotBroadcaster.Overflow.SHED_OLDEST);
+
+        StepVerifier.create(broadcaster.flux(), 0)
+                .then(() -> {
+                    for (int i = 0; i < 5; i++) {
+                        source.tryEmitNext(i);
+                    }
+                    assertEquals(2, broadcaster.maxLag());
+                    assertEquals(3, broadcaster.subscribers().get(0).getShed());
+                })
+                .thenRequest(2)
+                .expectNext(3, 4) // the newest ones
+                .thenCancel()
+                .verify();
+
+        assertEquals(3.0, meterRegistry.counter("test.shed").count());
+        assertEquals(0, broadcaster.subscriberCount());
+    }
+
+    @Test
+    void slowSubscriberIsDisconnected() {
+        HotBroadcaster<Integer> broadcaster = broadcaster(1, 2, HotBroadcaster.Overflow.DISCONNECT);
+
+        // the fast one keeps getting everything
+        StepVerifier.create(broadcaster.flux().take(4))
+                .then(() -> StepVerifier.create(broadcaster.flux(), 0)
+                        .then(() -> {
+                            for (int i = 0; i < 4; i++) {
+                                source.tryEmitNext(i);
+                            }
+                        })
+                        .thenRequest(10)
+                        .expectNext(0, 1)
+                        .verifyComplete())
+                .expectNext(0, 1, 2, 3)
+                .verifyComplete();
+
+        assertEquals(1.0, meterRegistry.counter("test.disconnected").count());
+    }
+}
@@ -0,0 +1,56 @@
+package com.reactivespring.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BloomFilterTest {
+
+    BloomFilter filter = BloomFilter.create(10_000, 0.01);
+
+    @Test
+    void create_sizing() {
+        // -10000 ln(0.01) / ln(2)^2 = 95851 bits, 7 hashes
+        assertEquals(95851, filter.size());
+        assertEquals(7, filter.hashes());
+        assertEquals(8L * ((95851 + 63) / 64), filter.memoryBytes());
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> BloomFilter.create(10, 1.0));
+    }
+
+    @Test
+    void noFalseNegatives() {
+        IntStream.range(0, 10_000).forEach(i -> filter.add("id-" + i));
+
+        assertTrue(IntStream.range(0, 10_000).allMatch(i -> filter.mightContain("id-" + i)));
+        assertEquals(10_000, filter.approximateCount(), 200);
+    }
+
+    @Test
+    void falsePositiveRate() {
+        IntStream.range(0, 10_000).forEach(i -> filter.add("id-" + i));
+
+        long falsePositives = IntStream.range(0, 100_000)
+                .filter(i -> filter.mightContain("unknown-" + i))
+                .count();
+        // 1% expected, some slack for the hashing
+        assertTrue(falsePositives < 2_000, "false positives : " + falsePositives);
+        assertEquals(0.01, filter.expectedFpp(), 0.002);
+    }
+
+    @Test
+    void addedTwice_countedOnce() {
+        IntStream.range(0, 1_000).forEach(i -> filter.add("id-" + i));
+        long bitsSet = filter.bitsSet();
+        double fpp = filter.expectedFpp();
+
+        // the write path and the change stream add the same ids
+        IntStream.range(0, 1_000).forEach(i -> filter.add("id-" + i));
+
+        assertEquals(bitsSet, filter.bitsSet());
+        assertEquals(fpp, filter.expectedFpp());
+        assertEquals(1_000, filter.approximateCount(), 20);
+    }
+}
@@ -0,0 +1,114 @@
+package com.reactivespring.cache;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoReplicaTest {
+
+    MovieInfoRepository movieInfoRepositoryMock = mock(MovieInfoRepository.class);
+    MovieInfoEvents movieInfoEvents = new MovieInfoEvents(null, "local", 16);
+    MovieInfoReplica movieInfoReplica = new MovieInfoReplica(movieInfoRepositoryMock, movieInfoEvents, true, new SimpleMeterRegistry());
+
+    MovieInfo batmanBegins = new MovieInfo("abc", "Batman Begins", 2005,
+            List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    MovieInfo darkKnight = new MovieInfo("def", "The Dark Knight", 2008,
+            List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"), 3L);
+
+    @Test
+    void load() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(batmanBegins, darkKnight));
+        assertFalse(movieInfoReplica.isReady());
+
+        movieInfoReplica.load().block();
+
+        assertTrue(movieInfoReplica.isReady());
+        assertEquals(batmanBegins, movieInfoReplica.get("abc"));
+        assertEquals(darkKnight, movieInfoReplica.get("def"));
+        assertNull(movieInfoReplica.get("xyz"));
+        assertEquals(List.of(darkKnight), movieInfoReplica.getByYear(2008));
+        assertEquals(List.of(), movieInfoReplica.getByYear(2012));
+        StepVerifier.create(movieInfoReplica.getAll())
+                .expectNext(batmanBegins, darkKnight)
+                .verifyComplete();
+        // Christan Bale once
+        assertEquals(3, movieInfoReplica.castNameCount());
+        assertSame(movieInfoReplica.get("abc").getCast().get(0), movieInfoReplica.get("def").getCast().get(0));
+    }
+
+    @Test
+    void versions() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(batmanBegins, darkKnight));
+        movieInfoReplica.load().block();
+
+        assertEquals(0L, movieInfoReplica.getVersion("abc"));
+        assertEquals(3L, movieInfoReplica.getVersion("def"));
+        assertNull(movieInfoReplica.getVersion("xyz"));
+        assertEquals(List.of(new MovieInfo("abc", null, null, null, null, null), new MovieInfo("def", null, null, null, null, 3L)),
+                movieInfoReplica.getVersions(null));
+        assertEquals(List.of(new MovieInfo("def", null, null, null, null, 3L)), movieInfoReplica.getVersions(2008));
+        assertEquals(List.of(), movieInfoReplica.getVersions(2012));
+    }
+
+    @Test
+    void followsTheEvents() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(batmanBegins, darkKnight));
+        movieInfoReplica.load().block();
+
+        MovieInfo moved = new MovieInfo("abc", "Batman Begins", 2006,
+                List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15"), 1L);
+        movieInfoEvents.updated(moved);
+        movieInfoEvents.deleted("def");
+        MovieInfo added = new MovieInfo("ghi", "Dark Knight Rises", 2012, List.of("Tom Hardy"), null);
+        movieInfoEvents.inserted(added);
+
+        assertEquals(moved, movieInfoReplica.get("abc"));
+        assertEquals(List.of(), movieInfoReplica.getByYear(2005));
+        assertEquals(List.of(moved), movieInfoReplica.getByYear(2006));
+        assertNull(movieInfoReplica.get("def"));
+        assertEquals(List.of(), movieInfoReplica.getByYear(2008));
+        assertEquals(added, movieInfoReplica.get("ghi")); // in the slot of def
+        assertEquals(2, movieInfoReplica.size());
+    }
+
+    @Test
+    void loadKeepsNewerEvents() {
+        Sinks.Many<MovieInfo> loading = Sinks.many().unicast().onBackpressureBuffer();
+        when(movieInfoRepositoryMock.findAll()).thenReturn(loading.asFlux());
+        StepVerifier.create(movieInfoReplica.load())
+                .then(() -> {
+                    // written while the load runs, the load then reads the older documents
+                    movieInfoEvents.updated(new MovieInfo("def", "The Dark Knight", 2008, List.of(), null, 4L));
+                    movieInfoEvents.deleted("abc");
+                    loading.tryEmitNext(batmanBegins);
+                    loading.tryEmitNext(darkKnight);
+                    loading.tryEmitComplete();
+                })
+                .verifyComplete();
+
+        assertNull(movieInfoReplica.get("abc"));
+        assertEquals(4L, movieInfoReplica.get("def").getVersion());
+    }
+
+    @Test
+    void memoryBytes() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.range(0, 1000)
+                .map(i -> new MovieInfo("id" + i, "Movie " + i, 2000 + i % 20, List.of("Actor " + i % 50, "Actor " + (i + 1) % 50), null)));
+        movieInfoReplica.load().block();
+
+        long perDocument = movieInfoReplica.memoryBytes() / movieInfoReplica.size();
+        assertTrue(perDocument > 50 && perDocument < 300, perDocument + " bytes");
+    }
+}
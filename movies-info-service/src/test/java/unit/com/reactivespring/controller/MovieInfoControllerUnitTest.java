@@ -1,21 +1,37 @@
 package com.reactivespring.controller;
 
 import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoUpdate;
+import com.reactivespring.exception.InvalidCursorException;
+import com.reactivespring.exception.MovieInfoConflictException;
 import com.reactivespring.service.MovieInfoService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.isA;
 
@@ -51,6 +67,179 @@ public class MovieInfoControllerUnitTest {
                 .hasSize(3);
     }
 
+    @Test
+    void getAllMovieInfos_json() {
+        when(movieInfoServiceMock.getAllMovieInfo()).thenReturn(Flux.fromIterable(movieInfos));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL) // no Accept, still one JSON array
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_JSON)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3);
+    }
+
+    @Test
+    void getAllMovieInfos_fields() {
+        when(movieInfoServiceMock.getMovieInfoFields(eq(2012), eq(Set.of("name", "year"))))
+                .thenReturn(Flux.just(new MovieInfo("abc", "Dark Knight Rises", 2012, null, null, 3L)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012&fields=year,name")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .exists(HttpHeaders.ETAG)
+                .expectBody()
+                .jsonPath("$[0].name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$[0].year").isEqualTo(2012)
+                .jsonPath("$[0].movieInfoId").doesNotExist()
+                .jsonPath("$[0].cast").doesNotExist()
+                .jsonPath("$[0].version").doesNotExist();
+
+        verify(movieInfoServiceMock, never()).getAllMovieInfoByYear(any());
+    }
+
+    @Test
+    void getAllMovieInfos_unknownFields() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?fields=name,rating")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+
+        verify(movieInfoServiceMock, never()).getMovieInfoFields(any(), any());
+    }
+
+    @Test
+    void getMovieInfoById_fields() {
+        when(movieInfoServiceMock.getMovieInfoFieldsById(eq("abc"), eq(Set.of("name", "cast"))))
+                .thenReturn(Mono.just(new MovieInfo("abc", "Dark Knight Rises", 2012,
+                        List.of("Christan Bale", "Tom Hardy"), null, 3L)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/abc?fields=name,cast")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises")
+                .jsonPath("$.cast.length()").isEqualTo(2)
+                .jsonPath("$.year").doesNotExist()
+                .jsonPath("$.release_date").doesNotExist();
+    }
+
+    @Test
+    void getMovieInfoById_fieldsNotFound() {
+        when(movieInfoServiceMock.getMovieInfoFieldsById(eq("def"), any())).thenReturn(Mono.empty());
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/def?fields=name")
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void streamMovieInfos() {
+        when(movieInfoServiceMock.streamMovieInfos(2012)).thenReturn(Flux.fromIterable(movieInfos));
+
+        Flux<MovieInfo> movieInfoFlux = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .returnResult(MovieInfo.class)
+                .getResponseBody();
+
+        StepVerifier.create(movieInfoFlux)
+                .expectNextCount(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void streamMovieInfos_boundedDemand() {
+        List<Long> requests = new CopyOnWriteArrayList<>();
+        when(movieInfoServiceMock.streamMovieInfos(null)).thenReturn(Flux.range(0, 1000)
+                .map(i -> new MovieInfo("id" + i, "name" + i, 2000, List.of(), null))
+                .doOnRequest(requests::add));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseBody()
+                .blockLast();
+
+        assertFalse(requests.isEmpty());
+        assertTrue(requests.stream().allMatch(n -> n <= 256), requests.toString());
+    }
+
+    @Test
+    void getMovieInfoPage() {
+        when(movieInfoServiceMock.getMovieInfoPage(null, null, 2))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos.subList(0, 2), "next")));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?size=2")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(2)
+                .jsonPath("$.nextCursor").isEqualTo("next");
+    }
+
+    @Test
+    void getMovieInfoPage_sizeIsCapped() {
+        when(movieInfoServiceMock.getMovieInfoPage(eq(2012), eq("next"), eq(100)))
+                .thenReturn(Mono.just(new MovieInfoPage(movieInfos.subList(2, 3), null)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012&cursor=next&size=5000")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.movieInfos.length()").isEqualTo(1)
+                .jsonPath("$.nextCursor").doesNotExist();
+    }
+
+    @Test
+    void getMovieInfoPage_invalidCursor() {
+        when(movieInfoServiceMock.getMovieInfoPage(any(), eq("bad"), eq(10)))
+                .thenReturn(Mono.error(new InvalidCursorException("cursor is not valid")));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?cursor=bad&size=10")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("cursor is not valid");
+    }
+
+    @Test
+    void getMovieInfoPage_fields() {
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?size=2&fields=name")
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+
     @Test
     void getMovieInfoById() {
         String id = "abc";
@@ -79,6 +268,122 @@ public class MovieInfoControllerUnitTest {
                 .jsonPath("$.name").isEqualTo("Dark Knight Rises");
     }
 
+    @Test
+    void getMovieInfoById_eTag() {
+        when(movieInfoServiceMock.getAllMovieInfoById("abc")).thenReturn(Mono.just(new MovieInfo("abc", "Dark Knight Rises", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 2L)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"");
+    }
+
+    @Test
+    void getMovieInfoById_notModified() {
+        when(movieInfoServiceMock.getMovieInfoVersion("abc")).thenReturn(Mono.just(2L));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .exchange()
+                .expectStatus()
+                .isNotModified()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"2\"")
+                .expectBody()
+                .isEmpty();
+
+        // only the version was looked at
+        verify(movieInfoServiceMock, never()).getAllMovieInfoById("abc");
+    }
+
+    @Test
+    void getMovieInfoById_modified() {
+        when(movieInfoServiceMock.getMovieInfoVersion("abc")).thenReturn(Mono.just(3L));
+        when(movieInfoServiceMock.getAllMovieInfoById("abc")).thenReturn(Mono.just(new MovieInfo("abc", "Dark Knight Rises", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L)));
+
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"2\"")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"3\"")
+                .expectBody()
+                .jsonPath("$.version").isEqualTo(3);
+    }
+
+    @Test
+    void getAllMovieInfoByYear_notModified() {
+        when(movieInfoServiceMock.getAllMovieInfoByYear(2012)).thenReturn(Flux.fromIterable(movieInfos.subList(2, 3)));
+        String eTag = webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(MovieInfo.class)
+                .getResponseHeaders()
+                .getETag();
+        assertNotNull(eTag);
+
+        // the same ids and versions, read without the other fields
+        when(movieInfoServiceMock.getMovieInfoVersions(2012)).thenReturn(Flux.just(new MovieInfo("abc", null, null, null, null)));
+        webTestClient.get()
+                .uri(MOVIE_INFO_URL + "?year=2012")
+                .header(HttpHeaders.IF_NONE_MATCH, eTag)
+                .exchange()
+                .expectStatus()
+                .isNotModified();
+        verify(movieInfoServiceMock, times(1)).getAllMovieInfoByYear(2012);
+    }
+
+    @Test
+    void updateMovieInfo_ifMatch() {
+        MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("abc"), eq(2L))).thenReturn(Mono.just(
+                new MovieInfo("abc", "Dark Knight Rises Part 2", 2012, List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L)));
+        when(movieInfoServiceMock.updateMovieInfo(isA(MovieInfo.class), eq("abc"), eq(1L)))
+                .thenReturn(Mono.error(new MovieInfoConflictException("movieInfo abc is not at version 1")));
+
+        webTestClient.put()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"2\"")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .valueEquals(HttpHeaders.ETAG, "\"3\"");
+
+        webTestClient.put()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .bodyValue(movieInfo)
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+    }
+
+    @Test
+    void deleteMovieInfo_ifMatch() {
+        when(movieInfoServiceMock.deleteMovieInfo("abc", 1L))
+                .thenReturn(Mono.error(new MovieInfoConflictException("movieInfo abc is not at version 1")));
+
+        webTestClient.delete()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus()
+                .isEqualTo(412);
+    }
+
     @Test
     void addMovieInfo() {
         MovieInfo movieInfo = new MovieInfo(null, "Man of Steel", 2012,
@@ -127,6 +432,92 @@ public class MovieInfoControllerUnitTest {
                 });
     }
 
+    @Test
+    void patchMovieInfo() {
+        String id = "abc";
+        when(movieInfoServiceMock.patchMovieInfo(isA(MovieInfoUpdate.class), eq(id))).thenReturn(Mono.just(new MovieInfo(id,
+                "Dark Knight Rises Part 2", 2012, List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 3L)));
+
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", id)
+                .bodyValue("{\"name\":\"Dark Knight Rises Part 2\"}")
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Dark Knight Rises Part 2")
+                .jsonPath("$.version").isEqualTo(3);
+    }
+
+    @Test
+    void patchMovieInfo_notFound() {
+        when(movieInfoServiceMock.patchMovieInfo(isA(MovieInfoUpdate.class), eq("def"))).thenReturn(Mono.empty());
+
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "def")
+                .bodyValue(new MovieInfoUpdate(null, 2013, null, null, null))
+                .exchange()
+                .expectStatus()
+                .isNotFound();
+    }
+
+    @Test
+    void patchMovieInfo_conflict() {
+        when(movieInfoServiceMock.patchMovieInfo(isA(MovieInfoUpdate.class), eq("abc")))
+                .thenReturn(Mono.error(new MovieInfoConflictException("movieInfo abc is not at version 1")));
+
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue(new MovieInfoUpdate(null, 2013, null, null, 1L))
+                .exchange()
+                .expectStatus()
+                .isEqualTo(409)
+                .expectBody(String.class)
+                .isEqualTo("movieInfo abc is not at version 1");
+    }
+
+    @Test
+    void patchMovieInfo_validation() {
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue(new MovieInfoUpdate(" ", -1, null, null, null))
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.name must be present,movieInfo.year must be positive value");
+    }
+
+    @Test
+    void patchMovieInfo_nothingToChange() {
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue("{\"version\":3}")
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo update must have a name, year, cast or release_date");
+        webTestClient
+                .patch()
+                .uri(MOVIE_INFO_URL + "/{id}", "abc")
+                .bodyValue("{\"cast\":[null]}")
+                .header("Content-Type", MediaType.APPLICATION_JSON_VALUE)
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("movieInfo.cast must be present");
+        verify(movieInfoServiceMock, never()).patchMovieInfo(any(), any());
+    }
+
     @Test
     void deleteMovieInfo() {
         String id = "abc";
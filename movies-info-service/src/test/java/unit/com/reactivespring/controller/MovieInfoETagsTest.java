@@ -0,0 +1,47 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoETagsTest {
+
+    static MovieInfo movieInfo(String id, Long version) {
+        return new MovieInfo(id, "name", 2012, List.of(), null, version);
+    }
+
+    @Test
+    void of() {
+        assertEquals("\"0\"", MovieInfoETags.of(movieInfo("abc", null)));
+        assertEquals("\"7\"", MovieInfoETags.of(movieInfo("abc", 7L)));
+    }
+
+    @Test
+    void ofList() {
+        String eTag = MovieInfoETags.ofList(List.of(movieInfo("abc", 1L), movieInfo("def", null)));
+
+        assertEquals(eTag, MovieInfoETags.ofList(List.of(movieInfo("def", 0L), movieInfo("abc", 1L))));
+        assertNotEquals(eTag, MovieInfoETags.ofList(List.of(movieInfo("abc", 2L), movieInfo("def", null))));
+        assertNotEquals(eTag, MovieInfoETags.ofList(List.of(movieInfo("abc", 1L))));
+        assertTrue(eTag.startsWith("\"2-"));
+    }
+
+    @Test
+    void noneMatch() {
+        assertTrue(MovieInfoETags.noneMatch("\"1\", \"2\"", "\"2\""));
+        assertTrue(MovieInfoETags.noneMatch("W/\"2\"", "\"2\""));
+        assertTrue(MovieInfoETags.noneMatch("*", "\"2\""));
+        assertFalse(MovieInfoETags.noneMatch("\"1\"", "\"2\""));
+    }
+
+    @Test
+    void ifMatchVersion() {
+        assertEquals(3L, MovieInfoETags.ifMatchVersion("\"3\""));
+        assertNull(MovieInfoETags.ifMatchVersion("*"));
+        assertEquals(-1L, MovieInfoETags.ifMatchVersion("W/\"3\""));
+        assertEquals(-1L, MovieInfoETags.ifMatchVersion("\"abc\""));
+    }
+}
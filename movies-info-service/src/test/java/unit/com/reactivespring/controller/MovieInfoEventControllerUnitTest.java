@@ -0,0 +1,73 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.InvalidCursorException;
+import com.reactivespring.service.MovieInfoEvents;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MovieInfoEventController.class)
+@AutoConfigureWebTestClient
+class MovieInfoEventControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoEvents movieInfoEventsMock;
+
+    @Test
+    void movieInfoEvents() {
+        MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christan Bale"), null);
+        when(movieInfoEventsMock.events("1-41")).thenReturn(Flux.just(
+                new MovieInfoEvent("1-42", MovieInfoEvent.Type.UPDATE, "abc", movieInfo),
+                new MovieInfoEvent("1-43", MovieInfoEvent.Type.DELETE, "abc", null)));
+
+        Flux<ServerSentEvent<MovieInfoEvent>> events = webTestClient.get()
+                .uri("/v1/movieinfos/events")
+                .header("Last-Event-ID", "1-41")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .returnResult(new ParameterizedTypeReference<ServerSentEvent<MovieInfoEvent>>() {
+                })
+                .getResponseBody();
+
+        StepVerifier.create(events)
+                .assertNext(event -> {
+                    assertEquals("1-42", event.id());
+                    assertEquals("UPDATE", event.event());
+                    assertEquals(2012, event.data().getMovieInfo().getYear());
+                })
+                .assertNext(event -> assertEquals("DELETE", event.event()))
+                .verifyComplete();
+    }
+
+    @Test
+    void movieInfoEvents_invalidToken() {
+        when(movieInfoEventsMock.events("nope")).thenReturn(Flux.error(new InvalidCursorException("invalid resume token nope")));
+
+        webTestClient.get()
+                .uri("/v1/movieinfos/events?resumeAfter=nope")
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .exchange()
+                .expectStatus()
+                .isBadRequest();
+    }
+}
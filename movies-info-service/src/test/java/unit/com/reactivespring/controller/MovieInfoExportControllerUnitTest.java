@@ -0,0 +1,67 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoExportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MovieInfoExportController.class)
+@Import(MovieInfoExportService.class)
+@AutoConfigureWebTestClient
+class MovieInfoExportControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoRepository movieInfoRepositoryMock;
+
+    @Test
+    void exportMovieInfos() throws IOException {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(
+                new MovieInfo(null, "Batman Begins", 2005, List.of("Christan Bale"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christan Bale"), LocalDate.parse("2012-07-20"))));
+
+        byte[] gzipped = webTestClient.get()
+                .uri("/v1/movieinfos/export")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .expectHeader()
+                .valueEquals(HttpHeaders.CONTENT_ENCODING, "gzip")
+                .expectBody()
+                .returnResult()
+                .getResponseBody();
+
+        assertNotNull(gzipped);
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+            String[] lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).split("\n");
+            assertEquals(2, lines.length);
+            assertEquals("{\"movieInfoId\":\"abc\",\"name\":\"Dark Knight Rises\",\"year\":2012,"
+                    + "\"cast\":[\"Christan Bale\"],\"release_date\":\"2012-07-20\"}", lines[1]);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.service.MovieInfoImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MovieInfoImportController.class)
+@AutoConfigureWebTestClient
+class MovieInfoImportControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoImportService movieInfoImportServiceMock;
+
+    @Test
+    void importMovieInfos() {
+        // one result per line, to see how the body was split
+        when(movieInfoImportServiceMock.importMovieInfos(any())).thenAnswer(invocation -> {
+            Flux<String> lines = invocation.getArgument(0);
+            return lines.index().map(line -> new MovieInfoImportResult(line.getT1() + 1, 1, 1, List.of()));
+        });
+
+        webTestClient.post()
+                .uri("/v1/movieinfos/import")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .bodyValue("{\"name\":\"Batman Begins\",\"year\":2005}\n{\"name\":\"The Dark Knight\",\"year\":2008}\n")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectHeader()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(MovieInfoImportResult.class)
+                .hasSize(2);
+    }
+}
@@ -0,0 +1,87 @@
+package com.reactivespring.controller;
+
+import com.reactivespring.cache.MovieInfoReplica;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.search.MovieInfoSearchIndex;
+import com.reactivespring.service.MovieInfoSearchService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@WebFluxTest(controllers = MovieInfoSearchController.class)
+@Import(MovieInfoSearchService.class)
+@AutoConfigureWebTestClient
+class MovieInfoSearchControllerUnitTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @MockBean
+    private MovieInfoSearchIndex movieInfoSearchIndexMock;
+
+    @MockBean
+    private MovieInfoReplica movieInfoReplicaMock;
+
+    @MockBean
+    private MovieInfoRepository movieInfoRepositoryMock;
+
+    MovieInfo batmanBegins = new MovieInfo("abc", "Batman Begins", 2005,
+            List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15"));
+    MovieInfo darkKnight = new MovieInfo("def", "The Dark Knight", 2008,
+            List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18"));
+
+    @Test
+    void searchMovieInfos() {
+        when(movieInfoSearchIndexMock.isReady()).thenReturn(true);
+        when(movieInfoSearchIndexMock.search("bale", 20)).thenReturn(List.of("def", "xyz", "abc"));
+        when(movieInfoRepositoryMock.findAllById(List.of("def", "xyz", "abc"))).thenReturn(Flux.just(batmanBegins, darkKnight));
+
+        webTestClient.get()
+                .uri("/v1/movieinfos/search?q=bale")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .isEqualTo(List.of(darkKnight, batmanBegins)); // in the order of the index, xyz was deleted
+    }
+
+    @Test
+    void searchMovieInfos_beforeTheIndexIsLoaded() {
+        when(movieInfoRepositoryMock.findByWordPrefixes(List.of("dark", "kn"), 100)).thenReturn(Flux.just(darkKnight));
+
+        webTestClient.get()
+                .uri("/v1/movieinfos/search?q=Dark Kn&limit=1000")
+                .exchange()
+                .expectStatus()
+                .is2xxSuccessful()
+                .expectBodyList(MovieInfo.class)
+                .isEqualTo(List.of(darkKnight));
+        verify(movieInfoSearchIndexMock, never()).search(anyString(), anyInt());
+    }
+
+    @Test
+    void searchMovieInfos_noWords() {
+        webTestClient.get()
+                .uri("/v1/movieinfos/search?q= - ")
+                .exchange()
+                .expectStatus()
+                .isBadRequest()
+                .expectBody(String.class)
+                .isEqualTo("q must have a letter or a digit");
+    }
+}
@@ -0,0 +1,97 @@
+package com.reactivespring.search;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import com.reactivespring.service.MovieInfoEvents;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoSearchIndexTest {
+
+    MovieInfoRepository movieInfoRepositoryMock = mock(MovieInfoRepository.class);
+    MovieInfoEvents movieInfoEvents = new MovieInfoEvents(null, "local", 16);
+    MovieInfoSearchIndex movieInfoSearchIndex = new MovieInfoSearchIndex(movieInfoRepositoryMock, movieInfoEvents, true, new SimpleMeterRegistry());
+
+    @BeforeEach
+    void setUp() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(
+                new MovieInfo("abc", "Batman Begins", 2005, List.of("Christan Bale", "Michael Cane"), LocalDate.parse("2005-06-15")),
+                new MovieInfo("def", "The Dark Knight", 2008, List.of("Christan Bale", "Heath Ledger"), LocalDate.parse("2008-07-18")),
+                new MovieInfo("ghi", "Dark Knight Rises", 2012, List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20")),
+                new MovieInfo("jkl", "Amélie", 2001, List.of("Audrey Tautou"), null),
+                new MovieInfo("mno", "Hardy Men", 2020, null, null)));
+        movieInfoSearchIndex.load().block();
+    }
+
+    @Test
+    void tokens() {
+        assertEquals(List.of("amelie", "2001"), MovieInfoSearchIndex.tokens("Amélie (2001)"));
+        assertEquals(List.of("spider", "man", "no", "way", "home"), MovieInfoSearchIndex.tokens("Spider-Man: No Way Home"));
+        assertEquals(List.of(), MovieInfoSearchIndex.tokens(" - "));
+    }
+
+    @Test
+    void search() {
+        assertTrue(movieInfoSearchIndex.isReady());
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("batman", 10));
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("BAT", 10)); // prefix
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("batmn", 10)); // a letter missing
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("btaman", 10)); // swapped letters
+        assertEquals(List.of(), movieInfoSearchIndex.search("bta", 10)); // too short for typos
+        assertEquals(List.of("jkl"), movieInfoSearchIndex.search("amelie", 10));
+        assertEquals(List.of("jkl"), movieInfoSearchIndex.search("Amélie", 10));
+        assertEquals(List.of("abc", "def", "ghi"), movieInfoSearchIndex.search("christain bale", 10));
+    }
+
+    @Test
+    void ranking() {
+        // the most tokens of the query, then the score, then the shortest name, then the id
+        assertEquals(List.of("def", "ghi"), movieInfoSearchIndex.search("dark knight ledger", 10));
+        assertEquals(List.of("abc", "def", "ghi"), movieInfoSearchIndex.search("bale", 10));
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("bale", 1));
+        // the name before the cast
+        assertEquals(List.of("mno", "ghi"), movieInfoSearchIndex.search("hardy", 10));
+        // the whole word before a prefix
+        assertEquals(List.of("def", "ghi", "abc"), movieInfoSearchIndex.search("dark knight b", 10));
+    }
+
+    @Test
+    void search_shortPrefix() {
+        for (int i = 0; i < 100; i++) {
+            movieInfoEvents.inserted(new MovieInfo("x" + i, "Zz" + (100 + i), 2000, null, null));
+        }
+
+        // the first 64 terms of the prefix, zz100 to zz163
+        List<String> ids = movieInfoSearchIndex.search("zz", 100);
+        assertEquals(64, ids.size());
+        assertTrue(ids.contains("x0") && ids.contains("x63") && !ids.contains("x64"), ids.toString());
+    }
+
+    @Test
+    void followsTheEvents() {
+        int terms = movieInfoSearchIndex.termCount();
+
+        movieInfoEvents.updated(new MovieInfo("abc", "Batman Returns", 1992, List.of("Michael Keaton"), null, 1L));
+        movieInfoEvents.deleted("jkl");
+        movieInfoEvents.inserted(new MovieInfo("pqr", "Batman Forever", 1995, List.of("Val Kilmer"), null));
+
+        assertEquals(List.of("abc", "pqr"), movieInfoSearchIndex.search("batman", 10));
+        assertEquals(List.of("abc"), movieInfoSearchIndex.search("keaton", 10));
+        assertEquals(List.of(), movieInfoSearchIndex.search("begins", 10));
+        assertEquals(List.of(), movieInfoSearchIndex.search("amelie", 10));
+        assertEquals(List.of("def", "ghi"), movieInfoSearchIndex.search("bale", 10));
+        // begins, cane, amelie, audrey, tautou out; returns, keaton, forever, val, kilmer in
+        assertEquals(terms, movieInfoSearchIndex.termCount());
+        assertEquals(5, movieInfoSearchIndex.size());
+    }
+}
@@ -0,0 +1,32 @@
+package com.reactivespring.service;
+
+import com.reactivespring.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoCursorTest {
+
+    @Test
+    void roundTrip() {
+        assertEquals("abc", MovieInfoCursor.decode(MovieInfoCursor.encode(null, "abc"), null));
+        assertEquals("61086d2b4b2ea6146b4a1f6a",
+                MovieInfoCursor.decode(MovieInfoCursor.encode(2012, "61086d2b4b2ea6146b4a1f6a"), 2012));
+        // the id itself can contain the separator
+        assertEquals("a|b", MovieInfoCursor.decode(MovieInfoCursor.encode(2012, "a|b"), 2012));
+    }
+
+    @Test
+    void opaque() {
+        String cursor = MovieInfoCursor.encode(2012, "abc");
+        assertFalse(cursor.contains("abc"));
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void invalid() {
+        assertThrows(InvalidCursorException.class, () -> MovieInfoCursor.decode("%%%", null));
+        assertThrows(InvalidCursorException.class, () -> MovieInfoCursor.decode(MovieInfoCursor.encode(2012, "abc"), null));
+        assertThrows(InvalidCursorException.class, () -> MovieInfoCursor.decode(MovieInfoCursor.encode(null, "abc"), 2005));
+    }
+}
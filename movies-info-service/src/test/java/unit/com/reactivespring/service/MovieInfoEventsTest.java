@@ -0,0 +1,79 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.exception.InvalidCursorException;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoEventsTest {
+
+    MovieInfoEvents movieInfoEvents = new MovieInfoEvents(null, "local", 4);
+
+    static MovieInfo movieInfo(String id) {
+        return new MovieInfo(id, "name", 2012, List.of(), null);
+    }
+
+    @Test
+    void events_fromNow() {
+        movieInfoEvents.inserted(movieInfo("abc")); // before the subscription, not replayed
+
+        StepVerifier.create(movieInfoEvents.events(null).take(1))
+                .then(() -> movieInfoEvents.deleted("def"))
+                .assertNext(event -> assertEquals("def", event.getMovieInfoId()))
+                .verifyComplete();
+    }
+
+    @Test
+    void eventsFromNow_fixedBeforeTheSubscription() {
+        movieInfoEvents.inserted(movieInfo("abc")); // before now
+        Flux<MovieInfoEvent> events = movieInfoEvents.eventsFromNow().block();
+        movieInfoEvents.updated(movieInfo("def")); // after now, before the subscription (while a load reads)
+
+        StepVerifier.create(events.take(2))
+                .then(() -> movieInfoEvents.deleted("def"))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.UPDATE, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETE, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void events_resumeAfterToken() {
+        AtomicReference<String> token = new AtomicReference<>();
+        StepVerifier.create(movieInfoEvents.events(null).take(1))
+                .then(() -> movieInfoEvents.updated(movieInfo("abc")))
+                .consumeNextWith(event -> token.set(event.getToken()))
+                .verifyComplete();
+        movieInfoEvents.deleted("abc");
+
+        // the client reconnects with the token of the update, it gets what it missed
+        StepVerifier.create(movieInfoEvents.events(token.get()).take(1))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETE, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void events_tokenOfAnotherStart() {
+        movieInfoEvents.inserted(movieInfo("abc"));
+        movieInfoEvents.deleted("abc");
+
+        // the replay is all there is, 4 events
+        StepVerifier.create(movieInfoEvents.events("1-500").take(2))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.INSERT, event.getType()))
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.DELETE, event.getType()))
+                .verifyComplete();
+    }
+
+    @Test
+    void events_invalidToken() {
+        StepVerifier.create(movieInfoEvents.events("not-a-token"))
+                .expectError(InvalidCursorException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,142 @@
+package com.reactivespring.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.core.io.buffer.NettyDataBuffer;
+import org.springframework.core.io.buffer.NettyDataBufferFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class MovieInfoExportServiceUnitTest {
+
+    MovieInfoRepository movieInfoRepositoryMock = mock(MovieInfoRepository.class);
+    ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    // small buffers so an export is many of them
+    MovieInfoExportService movieInfoExportService = new MovieInfoExportService(movieInfoRepositoryMock, objectMapper, 1024, 1, 256);
+
+    static Flux<MovieInfo> movieInfos(int count) {
+        return Flux.range(0, count).map(i -> new MovieInfo("id" + i, "Movie " + i, 1950 + i % 70,
+                List.of("Actor " + i % 100), LocalDate.of(2000, 1, 1).plusDays(i % 3650)));
+    }
+
+    static List<String> gunzipLines(byte[] gzipped) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(gzipped)), StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void export() throws IOException {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(movieInfos(10_000));
+
+        List<DataBuffer> buffers = movieInfoExportService.export(new DefaultDataBufferFactory()).collectList().block();
+
+        assertNotNull(buffers);
+        assertTrue(buffers.size() > 1, "one buffer per chunk");
+        byte[] gzipped = DataBufferUtils.join(Flux.fromIterable(buffers))
+                .map(joined -> {
+                    byte[] bytes = new byte[joined.readableByteCount()];
+                    joined.read(bytes);
+                    return bytes;
+                })
+                .block();
+        List<String> lines = gunzipLines(gzipped);
+        assertEquals(10_000, lines.size());
+        assertEquals(movieInfos(10_000).blockLast(), objectMapper.readValue(lines.get(9_999), MovieInfo.class));
+    }
+
+    @Test
+    void export_empty() throws IOException {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.empty());
+
+        DataBuffer buffer = movieInfoExportService.export(new DefaultDataBufferFactory()).single().block();
+
+        assertNotNull(buffer);
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        assertEquals(List.of(""), gunzipLines(bytes));
+    }
+
+    @Test
+    void export_backpressure() {
+        AtomicLong requested = new AtomicLong();
+        when(movieInfoRepositoryMock.findAll()).thenReturn(movieInfos(1_000_000).doOnRequest(requested::addAndGet));
+
+        StepVerifier.create(movieInfoExportService.export(new DefaultDataBufferFactory()), 1)
+                .expectNextCount(1)
+                .thenCancel()
+                .verify();
+
+        // only what it took to fill the first buffer was read
+        assertTrue(requested.get() > 0);
+        assertTrue(requested.get() < 100_000, "requested " + requested.get());
+    }
+
+    @Test
+    void export_cancelReleasesBuffers() {
+        when(movieInfoRepositoryMock.findAll()).thenReturn(movieInfos(100_000));
+        List<NettyDataBuffer> allocated = new CopyOnWriteArrayList<>();
+        NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT) {
+            @Override
+            public NettyDataBuffer allocateBuffer(int initialCapacity) {
+                NettyDataBuffer buffer = super.allocateBuffer(initialCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+        };
+
+        DataBuffer first = movieInfoExportService.export(bufferFactory).blockFirst();
+        DataBufferUtils.release(first);
+
+        assertTrue(allocated.size() >= 2);
+        allocated.forEach(buffer -> assertEquals(0, buffer.getNativeBuffer().refCnt()));
+    }
+
+    @Test
+    void writer_nothingWrittenOnceClosed() throws IOException {
+        List<NettyDataBuffer> allocated = new CopyOnWriteArrayList<>();
+        NettyDataBufferFactory bufferFactory = new NettyDataBufferFactory(UnpooledByteBufAllocator.DEFAULT) {
+            @Override
+            public NettyDataBuffer allocateBuffer(int initialCapacity) {
+                NettyDataBuffer buffer = super.allocateBuffer(initialCapacity);
+                allocated.add(buffer);
+                return buffer;
+            }
+        };
+        MovieInfoExportService.GzipNdjsonWriter writer = new MovieInfoExportService.GzipNdjsonWriter(objectMapper, bufferFactory, 1024, 1);
+        writer.write(movieInfos(1).blockLast());
+
+        // the cancel of the response, while the cursor still has documents on the way
+        writer.close();
+
+        assertNull(writer.write(movieInfos(1).blockLast()));
+        assertNull(writer.finish());
+        writer.close();
+        assertEquals(1, allocated.size());
+        assertEquals(0, allocated.get(0).getNativeBuffer().refCnt());
+    }
+}
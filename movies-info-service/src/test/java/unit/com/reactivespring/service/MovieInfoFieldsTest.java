@@ -0,0 +1,39 @@
+package com.reactivespring.service;
+
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.exception.InvalidFieldsException;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieInfoFieldsTest {
+
+    @Test
+    void parse() {
+        assertNull(MovieInfoFields.parse(null));
+        // in the MovieInfo order, whatever the order asked
+        assertEquals(List.of("name", "year"), List.copyOf(MovieInfoFields.parse("year, name,year")));
+    }
+
+    @Test
+    void parse_unknown() {
+        InvalidFieldsException e = assertThrows(InvalidFieldsException.class, () -> MovieInfoFields.parse("name,rating"));
+        assertTrue(e.getMessage().contains("rating"));
+        assertThrows(InvalidFieldsException.class, () -> MovieInfoFields.parse(" , "));
+    }
+
+    @Test
+    void select() {
+        MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+        Map<String, Object> selected = MovieInfoFields.select(movieInfo, Set.of("name", "version"));
+
+        assertEquals(Map.of("name", "Dark Knight Rises"), selected); // no version yet
+    }
+}
@@ -0,0 +1,148 @@
+package com.reactivespring.service;
+
+import com.reactivespring.cache.MovieInfoIdFilter;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoImportResult;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import javax.validation.Validation;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class MovieInfoImportServiceUnitTest {
+
+    MovieInfoRepository movieInfoRepositoryMock = mock(MovieInfoRepository.class);
+    MovieInfoEvents movieInfoEvents = new MovieInfoEvents(null, "local", 16);
+    MovieInfoIdFilter movieInfoIdFilter = new MovieInfoIdFilter(movieInfoRepositoryMock, movieInfoEvents,
+            1000, 0.01, true, Duration.ofHours(1), new SimpleMeterRegistry());
+
+    MovieInfoImportService importService(int batchSize, Duration batchTimeout) {
+        return new MovieInfoImportService(movieInfoRepositoryMock, movieInfoIdFilter,
+                movieInfoEvents, Jackson2ObjectMapperBuilder.json().build(),
+                Validation.buildDefaultValidatorFactory().getValidator(), batchSize, batchTimeout);
+    }
+
+    static String line(String id, String name, int year) {
+        return "{\"movieInfoId\":" + (id == null ? "null" : "\"" + id + "\"") + ",\"name\":\"" + name + "\",\"year\":" + year
+                + ",\"cast\":[\"Christan Bale\"],\"release_date\":\"2005-06-15\"}";
+    }
+
+    @Test
+    void importMovieInfos_batches() {
+        when(movieInfoRepositoryMock.insertAllUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+
+        Flux<String> lines = Flux.just(line("a", "Batman Begins", 2005), line("b", "The Dark Knight", 2008),
+                "", line("c", "Dark Knight Rises", 2012));
+
+        StepVerifier.create(importService(2, Duration.ofSeconds(10)).importMovieInfos(lines))
+                .assertNext(result -> {
+                    assertEquals(1, result.getBatch());
+                    assertEquals(2, result.getReceived());
+                    assertEquals(2, result.getInserted());
+                    assertTrue(result.getFailures().isEmpty());
+                })
+                .assertNext(result -> {
+                    assertEquals(2, result.getBatch());
+                    assertEquals(1, result.getReceived());
+                    assertEquals(1, result.getInserted());
+                })
+                .verifyComplete();
+
+        verify(movieInfoRepositoryMock, times(2)).insertAllUnordered(anyList());
+    }
+
+    @Test
+    void importMovieInfos_failures() {
+        when(movieInfoRepositoryMock.findAllIds()).thenReturn(Flux.empty());
+        movieInfoIdFilter.rebuild().block();
+        // the second valid record (index 1 of the insert) is a duplicate id, the repository gives the new ones an id
+        when(movieInfoRepositoryMock.insertAllUnordered(anyList())).thenAnswer(invocation -> {
+            List<MovieInfo> movieInfos = invocation.getArgument(0);
+            movieInfos.stream().filter(movieInfo -> movieInfo.getMovieInfoId() == null)
+                    .forEach(movieInfo -> movieInfo.setMovieInfoId("generated"));
+            return Mono.just(Map.of(1, "E11000 duplicate key error"));
+        });
+
+        Flux<String> lines = Flux.just(line("a", "Batman Begins", 2005), "{not json", line("b", "", -1),
+                line("c", "The Dark Knight", 2008), line(null, "Dark Knight Rises", 2012));
+
+        StepVerifier.create(importService(10, Duration.ofSeconds(10)).importMovieInfos(lines))
+                .assertNext(result -> {
+                    assertEquals(5, result.getReceived());
+                    assertEquals(2, result.getInserted());
+                    List<MovieInfoImportResult.Failure> failures = result.getFailures();
+                    assertEquals(3, failures.size());
+                    assertEquals(2, failures.get(0).getLine());
+                    assertTrue(failures.get(0).getReason().startsWith("invalid JSON"));
+                    assertEquals(3, failures.get(1).getLine());
+                    assertEquals("movieInfo.name must be present,movieInfo.year must be positive value", failures.get(1).getReason());
+                    assertEquals(4, failures.get(2).getLine());
+                    assertEquals("c", failures.get(2).getMovieInfoId());
+                })
+                .verifyComplete();
+
+        // only the inserted ones are in the id filter
+        assertTrue(movieInfoIdFilter.mightContain("a"));
+        assertTrue(movieInfoIdFilter.mightContain("generated"));
+        assertFalse(movieInfoIdFilter.mightContain("c"));
+    }
+
+    @Test
+    void importMovieInfos_batchTimeout() {
+        when(movieInfoRepositoryMock.insertAllUnordered(anyList())).thenReturn(Mono.just(Map.of()));
+
+        // the second record comes after the batch timeout, so the first batch goes out on its own
+        Flux<String> lines = Flux.concat(Mono.just(line("a", "Batman Begins", 2005)),
+                Mono.delay(Duration.ofMillis(500)).map(i -> line("b", "The Dark Knight", 2008)));
+
+        StepVerifier.create(importService(10, Duration.ofMillis(100)).importMovieInfos(lines))
+                .assertNext(result -> assertEquals(1, result.getReceived()))
+                .assertNext(result -> assertEquals(1, result.getReceived()))
+                .verifyComplete();
+    }
+
+    // a line every 5ms, a flush every 10ms and 100ms per insert: the batches wait for the writes instead of failing
+    @Test
+    void importMovieInfos_slowBodySlowMongo() {
+        when(movieInfoRepositoryMock.insertAllUnordered(anyList()))
+                .thenAnswer(invocation -> Mono.delay(Duration.ofMillis(200)).thenReturn(Map.of()));
+
+        Flux<String> lines = Flux.interval(Duration.ofMillis(2))
+                .take(200)
+                .map(i -> line("id" + i, "Movie " + i, 2000))
+                .onBackpressureBuffer();
+
+        List<MovieInfoImportResult> results = importService(1_000, Duration.ofMillis(3)).importMovieInfos(lines)
+                .collectList()
+                .block(Duration.ofSeconds(30));
+
+        assertEquals(200, results.stream().mapToLong(MovieInfoImportResult::getInserted).sum());
+        // more records in a batch while an insert runs
+        assertTrue(results.size() < 50, results.size() + " batches");
+    }
+
+    @Test
+    void importMovieInfos_batchWriteError() {
+        when(movieInfoRepositoryMock.insertAllUnordered(anyList())).thenReturn(Mono.error(new IllegalStateException("mongo down")));
+
+        StepVerifier.create(importService(10, Duration.ofSeconds(10))
+                        .importMovieInfos(Flux.just(line("a", "Batman Begins", 2005), line("b", "The Dark Knight", 2008))))
+                .assertNext(result -> {
+                    assertEquals(0, result.getInserted());
+                    assertEquals(2, result.getFailures().size());
+                    assertEquals("mongo down", result.getFailures().get(0).getReason());
+                })
+                .verifyComplete();
+    }
+}
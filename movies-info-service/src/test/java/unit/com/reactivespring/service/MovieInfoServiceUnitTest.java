@@ -0,0 +1,413 @@
+package com.reactivespring.service;
+
+import com.reactivespring.cache.MovieInfoCache;
+import com.reactivespring.cache.MovieInfoIdFilter;
+import com.reactivespring.cache.MovieInfoReplica;
+import com.reactivespring.domain.MovieInfo;
+import com.reactivespring.domain.MovieInfoEvent;
+import com.reactivespring.domain.MovieInfoPage;
+import com.reactivespring.domain.MovieInfoUpdate;
+import com.reactivespring.exception.InvalidCursorException;
+import com.reactivespring.exception.MovieInfoConflictException;
+import com.reactivespring.repository.MovieInfoRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isA;
+import static org.mockito.Mockito.*;
+
+class MovieInfoServiceUnitTest {
+
+    MovieInfoRepository movieInfoRepositoryMock = mock(MovieInfoRepository.class);
+    MovieInfoCache movieInfoCache = new MovieInfoCache(100, Duration.ofMinutes(10), new SimpleMeterRegistry());
+    MovieInfoEvents movieInfoEvents = new MovieInfoEvents(null, "local", 16);
+    MovieInfoIdFilter movieInfoIdFilter = new MovieInfoIdFilter(movieInfoRepositoryMock, movieInfoEvents,
+            1000, 0.01, true, Duration.ofHours(1), new SimpleMeterRegistry());
+    MovieInfoReplica movieInfoReplica = new MovieInfoReplica(movieInfoRepositoryMock, movieInfoEvents, false, new SimpleMeterRegistry());
+    MovieInfoService movieInfoService = new MovieInfoService(movieInfoRepositoryMock, movieInfoCache, movieInfoIdFilter, movieInfoEvents,
+            movieInfoReplica);
+
+    MovieInfo movieInfo = new MovieInfo("abc", "Dark Knight Rises", 2012,
+            List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"));
+
+    @Test
+    void getAllMovieInfoById_cached() {
+        when(movieInfoRepositoryMock.findById("abc")).thenReturn(Mono.just(movieInfo));
+
+        for (int i = 0; i < 3; i++) {
+            StepVerifier.create(movieInfoService.getAllMovieInfoById("abc"))
+                    .expectNext(movieInfo)
+                    .verifyComplete();
+        }
+
+        verify(movieInfoRepositoryMock, times(1)).findById("abc");
+        assertEquals(1, movieInfoCache.stats().missCount());
+        assertEquals(2, movieInfoCache.stats().hitCount());
+    }
+
+    @Test
+    void getAllMovieInfoById_notFoundIsNotCached() {
+        when(movieInfoRepositoryMock.findById("def")).thenReturn(Mono.empty());
+
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(movieInfoService.getAllMovieInfoById("def"))
+                    .verifyComplete();
+        }
+
+        verify(movieInfoRepositoryMock, times(2)).findById("def");
+    }
+
+    @Test
+    void getAllMovieInfoById_concurrentMissesShareOneLoad() {
+        Sinks.One<MovieInfo> load = Sinks.one();
+        AtomicInteger subscriptions = new AtomicInteger();
+        when(movieInfoRepositoryMock.findById("abc"))
+                .thenReturn(load.asMono().doOnSubscribe(s -> subscriptions.incrementAndGet()));
+
+        AtomicReference<MovieInfo> first = new AtomicReference<>();
+        AtomicReference<MovieInfo> second = new AtomicReference<>();
+        AtomicReference<MovieInfo> cancelled = new AtomicReference<>();
+        movieInfoService.getAllMovieInfoById("abc").subscribe(first::set);
+        movieInfoService.getAllMovieInfoById("abc").subscribe(second::set);
+        Disposable disposable = movieInfoService.getAllMovieInfoById("abc").subscribe(cancelled::set);
+
+        // one caller going away must not cancel the load for the others
+        disposable.dispose();
+        load.tryEmitValue(movieInfo);
+
+        assertEquals(1, subscriptions.get());
+        assertSame(movieInfo, first.get());
+        assertSame(movieInfo, second.get());
+        assertNull(cancelled.get());
+    }
+
+    // 200 callers ask for the same year and the same id while the first query runs (50ms)
+    @Test
+    void concurrentLookups_loadTest() {
+        AtomicInteger findByYearCalls = new AtomicInteger();
+        AtomicInteger findByIdCalls = new AtomicInteger();
+        when(movieInfoRepositoryMock.findByYear(2012)).thenReturn(Flux.just(movieInfo)
+                .delaySubscription(Duration.ofMillis(50))
+                .doOnSubscribe(s -> findByYearCalls.incrementAndGet()));
+        when(movieInfoRepositoryMock.findById("abc")).thenReturn(Mono.just(movieInfo)
+                .delaySubscription(Duration.ofMillis(50))
+                .doOnSubscribe(s -> findByIdCalls.incrementAndGet()));
+
+        int callers = 200;
+        Flux<MovieInfo> byYear = Flux.range(0, callers)
+                .flatMap(i -> movieInfoService.getAllMovieInfoByYear(2012).subscribeOn(Schedulers.parallel()), callers);
+        Flux<MovieInfo> byId = Flux.range(0, callers)
+                .flatMap(i -> movieInfoService.getAllMovieInfoById("abc").subscribeOn(Schedulers.parallel()), callers);
+
+        StepVerifier.create(Flux.merge(byYear, byId))
+                .expectNextCount(2 * callers)
+                .verifyComplete();
+
+        assertEquals(1, findByYearCalls.get());
+        assertEquals(1, findByIdCalls.get());
+    }
+
+    @Test
+    void updateMovieInfo_refreshesCache() {
+        MovieInfo updated = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 1L);
+        when(movieInfoRepositoryMock.findById("abc")).thenReturn(Mono.just(movieInfo));
+        when(movieInfoRepositoryMock.replaceFields("abc", updated, null, false)).thenReturn(Mono.just(updated));
+
+        movieInfoService.getAllMovieInfoById("abc").block();
+        movieInfoService.updateMovieInfo(updated, "abc").block();
+
+        StepVerifier.create(movieInfoService.getAllMovieInfoById("abc"))
+                .expectNext(updated)
+                .verifyComplete();
+        // only the first get, no read before the update and the last get is a hit
+        verify(movieInfoRepositoryMock, times(1)).findById("abc");
+    }
+
+    @Test
+    void updateMovieInfo_versionIncrementedByMongo() {
+        MovieInfo replaced = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christan Bale"), LocalDate.parse("2012-07-20"), 2L);
+        when(movieInfoRepositoryMock.replaceFields("abc", movieInfo, null, false)).thenReturn(Mono.just(replaced));
+        when(movieInfoRepositoryMock.replaceFields("def", movieInfo, null, false)).thenReturn(Mono.empty());
+
+        assertEquals(2L, movieInfoService.updateMovieInfo(movieInfo, "abc").block().getVersion());
+        StepVerifier.create(movieInfoService.updateMovieInfo(movieInfo, "def"))
+                .verifyComplete();
+        verify(movieInfoRepositoryMock, never()).save(isA(MovieInfo.class));
+    }
+
+    @Test
+    void addMovieInfo_ignoresTheClientVersion() {
+        MovieInfo added = new MovieInfo(null, "Man of Steel", 2012, List.of("Henry Cavill"), LocalDate.parse("2012-05-18"), 7L);
+        when(movieInfoRepositoryMock.save(isA(MovieInfo.class))).thenAnswer(invocation -> {
+            MovieInfo saved = invocation.getArgument(0);
+            saved.setMovieInfoId("def");
+            return Mono.just(saved);
+        });
+
+        assertNull(movieInfoService.addMovieInfo(added).block().getVersion());
+    }
+
+    @Test
+    void patchMovieInfo_refreshesCache() {
+        MovieInfoUpdate update = new MovieInfoUpdate("Dark Knight Rises Part 2", null, null, null, null);
+        MovieInfo patched = new MovieInfo("abc", "Dark Knight Rises Part 2", 2012,
+                List.of("Christan Bale", "Tom Hardy"), LocalDate.parse("2012-07-20"), 1L);
+        when(movieInfoRepositoryMock.findById("abc")).thenReturn(Mono.just(movieInfo));
+        when(movieInfoRepositoryMock.updateFields("abc", update)).thenReturn(Mono.just(patched));
+
+        movieInfoService.getAllMovieInfoById("abc").block();
+        StepVerifier.create(movieInfoService.patchMovieInfo(update, "abc"))
+                .expectNext(patched)
+                .verifyComplete();
+
+        StepVerifier.create(movieInfoService.getAllMovieInfoById("abc"))
+                .expectNext(patched)
+                .verifyComplete();
+        // no read before the update
+        verify(movieInfoRepositoryMock, times(1)).findById("abc");
+    }
+
+    @Test
+    void patchMovieInfo_staleVersion() {
+        MovieInfoUpdate update = new MovieInfoUpdate(null, 2013, null, null, 1L);
+        when(movieInfoRepositoryMock.updateFields("abc", update)).thenReturn(Mono.empty());
+        when(movieInfoRepositoryMock.existsById("abc")).thenReturn(Mono.just(true));
+        when(movieInfoRepositoryMock.updateFields("def", update)).thenReturn(Mono.empty());
+        when(movieInfoRepositoryMock.existsById("def")).thenReturn(Mono.just(false));
+
+        StepVerifier.create(movieInfoService.patchMovieInfo(update, "abc"))
+                .expectError(MovieInfoConflictException.class)
+                .verify();
+        StepVerifier.create(movieInfoService.patchMovieInfo(update, "def"))
+                .verifyComplete();
+    }
+
+    @Test
+    void addMovieInfo_withIdIsAnUpsert() {
+        MovieInfo added = new MovieInfo(null, "Man of Steel", 2012, List.of("Henry Cavill"), LocalDate.parse("2012-05-18"));
+        when(movieInfoRepositoryMock.save(added)).thenReturn(Mono.just(new MovieInfo("def", "Man of Steel", 2012,
+                List.of("Henry Cavill"), LocalDate.parse("2012-05-18"))));
+        when(movieInfoRepositoryMock.replaceFields("abc", movieInfo, null, true)).thenReturn(Mono.just(movieInfo));
+
+        movieInfoService.addMovieInfo(added).block();
+        movieInfoService.addMovieInfo(movieInfo).block();
+
+        verify(movieInfoRepositoryMock).save(added);
+        verify(movieInfoRepositoryMock).replaceFields("abc", movieInfo, null, true);
+    }
+
+    @Test
+    void getMovieInfoVersion() {
+        MovieInfo cached = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christan Bale"), LocalDate.parse("2012-07-20"), 4L);
+        when(movieInfoRepositoryMock.findVersionById("def")).thenReturn(Mono.just(2L));
+        movieInfoCache.put(cached);
+
+        // from the cache, then from the projection
+        StepVerifier.create(movieInfoService.getMovieInfoVersion("abc"))
+                .expectNext(4L)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getMovieInfoVersion("def"))
+                .expectNext(2L)
+                .verifyComplete();
+        verify(movieInfoRepositoryMock, never()).findVersionById("abc");
+        verify(movieInfoRepositoryMock, never()).findById(anyString());
+    }
+
+    @Test
+    void updateMovieInfo_ifMatch() {
+        MovieInfo replaced = new MovieInfo("abc", "Dark Knight Rises", 2012, List.of("Christan Bale"), LocalDate.parse("2012-07-20"), 3L);
+        when(movieInfoRepositoryMock.replaceFields("abc", movieInfo, 2L, false)).thenReturn(Mono.just(replaced));
+        when(movieInfoRepositoryMock.replaceFields("abc", movieInfo, 1L, false)).thenReturn(Mono.empty());
+        when(movieInfoRepositoryMock.existsById("abc")).thenReturn(Mono.just(true));
+
+        StepVerifier.create(movieInfoService.updateMovieInfo(movieInfo, "abc", 2L))
+                .expectNext(replaced)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.updateMovieInfo(movieInfo, "abc", 1L))
+                .expectError(MovieInfoConflictException.class)
+                .verify();
+        verify(movieInfoRepositoryMock, never()).save(isA(MovieInfo.class));
+    }
+
+    @Test
+    void deleteMovieInfo_ifMatch() {
+        when(movieInfoRepositoryMock.deleteAtVersion("abc", 2L)).thenReturn(Mono.just(1L));
+        when(movieInfoRepositoryMock.deleteAtVersion("abc", 1L)).thenReturn(Mono.just(0L));
+
+        StepVerifier.create(movieInfoService.deleteMovieInfo("abc", 1L))
+                .expectError(MovieInfoConflictException.class)
+                .verify();
+        StepVerifier.create(movieInfoService.deleteMovieInfo("abc", 2L))
+                .verifyComplete();
+    }
+
+    @Test
+    void deleteMovieInfo_invalidatesCache() {
+        when(movieInfoRepositoryMock.findById("abc")).thenReturn(Mono.just(movieInfo)).thenReturn(Mono.empty());
+        when(movieInfoRepositoryMock.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+
+        movieInfoService.getAllMovieInfoById("abc").block();
+        movieInfoService.deleteMovieInfo("abc").block();
+
+        StepVerifier.create(movieInfoService.getAllMovieInfoById("abc"))
+                .verifyComplete();
+    }
+
+    @Test
+    void getAllMovieInfoById_unknownIdSkipsMongo() {
+        when(movieInfoRepositoryMock.findAllIds()).thenReturn(Flux.just(movieInfo));
+        movieInfoIdFilter.rebuild().block();
+
+        StepVerifier.create(movieInfoService.getAllMovieInfoById("not-there"))
+                .verifyComplete();
+
+        verify(movieInfoRepositoryMock, never()).findById("not-there");
+    }
+
+    @Test
+    void idFilter_onlyAddsUntilRebuilt() {
+        MovieInfo added = new MovieInfo("def", "Man of Steel", 2012,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2012-05-18"));
+        when(movieInfoRepositoryMock.findAllIds()).thenReturn(Flux.just(movieInfo)).thenReturn(Flux.just(added));
+        when(movieInfoRepositoryMock.replaceFields("def", added, null, true)).thenReturn(Mono.just(added));
+        when(movieInfoRepositoryMock.deleteByMovieInfoId("abc")).thenReturn(Mono.just(1L));
+        movieInfoIdFilter.rebuild().block();
+
+        movieInfoService.addMovieInfo(added).block();
+        assertTrue(movieInfoIdFilter.mightContain("def"));
+
+        // a deleted id is a false positive until the next build, never a false negative
+        movieInfoService.deleteMovieInfo("abc").block();
+        assertTrue(movieInfoIdFilter.mightContain("abc"));
+
+        movieInfoIdFilter.rebuild().block();
+        assertFalse(movieInfoIdFilter.mightContain("abc"));
+        assertTrue(movieInfoIdFilter.mightContain("def"));
+    }
+
+    @Test
+    void idFilter_offWithoutChangeStreamsAndOtherWriters() {
+        MovieInfoIdFilter notTheOnlyWriter = new MovieInfoIdFilter(movieInfoRepositoryMock, movieInfoEvents,
+                1000, 0.01, false, Duration.ofHours(1), new SimpleMeterRegistry());
+        when(movieInfoRepositoryMock.findAllIds()).thenReturn(Flux.just(movieInfo));
+
+        notTheOnlyWriter.rebuild().block();
+
+        // the ids another instance inserts can't be seen
+        assertFalse(notTheOnlyWriter.isReady());
+        assertTrue(notTheOnlyWriter.mightContain("inserted-elsewhere"));
+        verify(movieInfoRepositoryMock, never()).findAllIds();
+    }
+
+    @Test
+    void events_followWrites() {
+        MovieInfo added = new MovieInfo("def", "Man of Steel", 2012,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2012-05-18"), 1L);
+        MovieInfo patched = new MovieInfo("def", "Man of Steel", 2013,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2012-05-18"), 2L);
+        when(movieInfoRepositoryMock.replaceFields("def", added, null, true)).thenReturn(Mono.just(added));
+        when(movieInfoRepositoryMock.updateFields(eq("def"), isA(MovieInfoUpdate.class))).thenReturn(Mono.just(patched));
+        when(movieInfoRepositoryMock.deleteByMovieInfoId("def")).thenReturn(Mono.just(1L));
+        when(movieInfoRepositoryMock.deleteByMovieInfoId("xyz")).thenReturn(Mono.just(0L));
+
+        StepVerifier.create(movieInfoEvents.events(null).take(3))
+                .then(() -> {
+                    movieInfoService.addMovieInfo(added).block();
+                    movieInfoService.patchMovieInfo(new MovieInfoUpdate(null, 2013, null, null, null), "def").block();
+                    movieInfoService.deleteMovieInfo("xyz").block(); // nothing deleted, no event
+                    movieInfoService.deleteMovieInfo("def").block();
+                })
+                .assertNext(event -> assertEquals(MovieInfoEvent.Type.INSERT, event.getType()))
+                .assertNext(event -> assertEquals(2013, event.getMovieInfo().getYear()))
+                .assertNext(event -> {
+                    assertEquals(MovieInfoEvent.Type.DELETE, event.getType());
+                    assertEquals("def", event.getMovieInfoId());
+                    assertNull(event.getMovieInfo());
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void replica_servesTheReads() {
+        MovieInfo other = new MovieInfo("def", "Man of Steel", 2013,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2013-06-14"));
+        when(movieInfoRepositoryMock.findAll()).thenReturn(Flux.just(movieInfo, other));
+        movieInfoReplica.load().block();
+        clearInvocations(movieInfoRepositoryMock);
+
+        StepVerifier.create(movieInfoService.getAllMovieInfo())
+                .expectNextCount(2)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getAllMovieInfoById("abc"))
+                .expectNext(movieInfo)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getAllMovieInfoByYear(2013))
+                .expectNext(other)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getMovieInfoVersion("abc"))
+                .expectNext(0L)
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getMovieInfoVersion("xyz"))
+                .verifyComplete();
+        StepVerifier.create(movieInfoService.getMovieInfoVersions(2013).map(MovieInfo::getMovieInfoId))
+                .expectNext("def")
+                .verifyComplete();
+        verifyNoInteractions(movieInfoRepositoryMock);
+    }
+
+    @Test
+    void getMovieInfoPage() {
+        MovieInfo second = new MovieInfo("def", "Man of Steel", 2012,
+                List.of("Henry Cavill", "Amy Adams"), LocalDate.parse("2012-05-18"));
+        when(movieInfoRepositoryMock.findPageAfter(2012, null, 2)).thenReturn(Flux.just(movieInfo, second));
+        when(movieInfoRepositoryMock.findPageAfter(2012, "abc", 2)).thenReturn(Flux.just(second));
+
+        MovieInfoPage first = movieInfoService.getMovieInfoPage(2012, null, 1).block();
+        assertEquals(List.of(movieInfo), first.getMovieInfos());
+        assertNotNull(first.getNextCursor());
+
+        MovieInfoPage last = movieInfoService.getMovieInfoPage(2012, first.getNextCursor(), 1).block();
+        assertEquals(List.of(second), last.getMovieInfos());
+        assertNull(last.getNextCursor());
+    }
+
+    @Test
+    void getMovieInfoPage_cursorOfAnotherYear() {
+        String cursor = MovieInfoCursor.encode(2005, "abc");
+
+        StepVerifier.create(movieInfoService.getMovieInfoPage(2012, cursor, 10))
+                .expectError(InvalidCursorException.class)
+                .verify();
+        StepVerifier.create(movieInfoService.getMovieInfoPage(null, "not base64 !", 10))
+                .expectError(InvalidCursorException.class)
+                .verify();
+    }
+
+    @Test
+    void cache_evictsBeyondMaximumSize() {
+        MovieInfoCache smallCache = new MovieInfoCache(1, Duration.ofMinutes(10), new SimpleMeterRegistry());
+        for (String id : List.of("a", "b", "c")) {
+            smallCache.get(id, key -> Mono.just(new MovieInfo(key, key, 2000, List.of(), null))).block();
+        }
+        smallCache.cleanUp();
+
+        assertEquals(1, smallCache.estimatedSize());
+        assertEquals(2, smallCache.stats().evictionCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.reactivespring.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    SingleFlight<Integer, String> singleFlight = new SingleFlight<>();
+    AtomicInteger loads = new AtomicInteger();
+    AtomicBoolean loadCancelled = new AtomicBoolean();
+
+    Flux<String> load(Sinks.Many<String> sink) {
+        return sink.asFlux()
+                .doOnSubscribe(s -> loads.incrementAndGet())
+                .doOnCancel(() -> loadCancelled.set(true));
+    }
+
+    @Test
+    void concurrentCallersShareOneLoad() {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> first = new ArrayList<>();
+        List<String> late = new ArrayList<>();
+
+        singleFlight.flux(2012, year -> load(sink)).subscribe(first::add);
+        sink.tryEmitNext("Dark Knight Rises");
+        // joins after the first element, still gets it
+        singleFlight.flux(2012, year -> load(sink)).subscribe(late::add);
+        sink.tryEmitNext("Man of Steel");
+        sink.tryEmitComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(List.of("Dark Knight Rises", "Man of Steel"), first);
+        assertEquals(first, late);
+        assertEquals(0, singleFlight.inFlight());
+    }
+
+    @Test
+    void nothingIsKeptAfterTheLoad() {
+        for (int i = 0; i < 2; i++) {
+            StepVerifier.create(singleFlight.flux(2012, year -> Flux.just("Dark Knight Rises")
+                            .doOnSubscribe(s -> loads.incrementAndGet())))
+                    .expectNext("Dark Knight Rises")
+                    .verifyComplete();
+        }
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void differentKeysDontShare() {
+        Sinks.Many<String> sink2005 = Sinks.many().unicast().onBackpressureBuffer();
+        Sinks.Many<String> sink2008 = Sinks.many().unicast().onBackpressureBuffer();
+        singleFlight.flux(2005, year -> load(sink2005)).subscribe();
+        singleFlight.flux(2008, year -> load(sink2008)).subscribe();
+
+        assertEquals(2, loads.get());
+        assertEquals(2, singleFlight.inFlight());
+    }
+
+    @Test
+    void oneCallerCancelling_othersKeepTheLoad() {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+        List<String> remaining = new ArrayList<>();
+
+        Disposable cancelled = singleFlight.flux(2012, year -> load(sink)).subscribe();
+        singleFlight.flux(2012, year -> load(sink)).subscribe(remaining::add);
+        cancelled.dispose();
+        sink.tryEmitNext("Dark Knight Rises");
+        sink.tryEmitComplete();
+
+        assertFalse(loadCancelled.get());
+        assertEquals(List.of("Dark Knight Rises"), remaining);
+    }
+
+    @Test
+    void allCallersCancelling_cancelsTheLoad() {
+        Sinks.Many<String> sink = Sinks.many().unicast().onBackpressureBuffer();
+
+        Disposable first = singleFlight.flux(2012, year -> load(sink)).subscribe();
+        Disposable second = singleFlight.flux(2012, year -> load(sink)).subscribe();
+        first.dispose();
+        second.dispose();
+
+        assertTrue(loadCancelled.get());
+        assertEquals(0, singleFlight.inFlight());
+
+        // the next caller starts a new load
+        StepVerifier.create(singleFlight.flux(2012, year -> Flux.just("Man of Steel")))
+                .expectNext("Man of Steel")
+                .verifyComplete();
+    }
+}
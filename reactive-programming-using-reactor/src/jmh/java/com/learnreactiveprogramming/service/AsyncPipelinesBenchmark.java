@@ -0,0 +1,53 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ namesFlux_flatmap_async and namesFlux_concatmap with a fixed zero delay on a dedicated scheduler,
+ so every character still hops threads through delayElements but no run waits on random sleeps.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncPipelinesBenchmark {
+
+    @Param({"3", "1000", "100000"})
+    int size;
+
+    int stringLength = 3;
+
+    Scheduler scheduler;
+
+    FluxAndMonoGeneratorService fluxAndMonoGeneratorService;
+
+    @Setup
+    public void setUp() {
+        scheduler = Schedulers.newParallel("benchmark");
+        fluxAndMonoGeneratorService = new FluxAndMonoGeneratorService(BenchmarkNames.of(size),
+                scheduler, DelayModel.fixed(Duration.ZERO));
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap_async(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_flatmap_async(stringLength).blockLast());
+    }
+
+    @Benchmark
+    public void namesFlux_concatmap(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_concatmap(stringLength).blockLast());
+    }
+}
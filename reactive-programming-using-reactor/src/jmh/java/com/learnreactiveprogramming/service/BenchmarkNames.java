@@ -0,0 +1,21 @@
+package com.learnreactiveprogramming.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class BenchmarkNames {
+
+    private static final List<String> BASE_NAMES = List.of("alex", "ben", "chloe");
+
+    private BenchmarkNames() {
+    }
+
+    // cycles the 3 names used by the service so every size has the same mix of lengths
+    static List<String> of(int size) {
+        List<String> names = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            names.add(BASE_NAMES.get(i % BASE_NAMES.size()));
+        }
+        return List.copyOf(names);
+    }
+}
@@ -0,0 +1,55 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ What each DebugMode costs on the service pipelines. Every mode runs in its own fork (the agent and the hooks
+ can't be undone in a JVM). size 3 is mostly assembly (where HOOKS captures its stack traces),
+ size 10000 is mostly the per element cost of the extra checkpoint operators.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DebugModeBenchmark {
+
+    @Param({"OFF", "CHECKPOINTS", "AGENT", "HOOKS"})
+    DebugMode mode;
+
+    @Param({"3", "10000"})
+    int size;
+
+    FluxAndMonoGeneratorService service;
+
+    @Setup
+    public void setUp() {
+        // before the service is created, so AGENT instruments its class when it is loaded
+        DebugTracing.install(mode);
+        service = new FluxAndMonoGeneratorService(BenchmarkNames.of(size));
+    }
+
+    @Benchmark
+    public void namesFlux_map(Blackhole blackhole) {
+        service.namesFlux_map().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_filter(Blackhole blackhole) {
+        service.namesFlux_filter(3).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap(Blackhole blackhole) {
+        service.namesFlux_flatmap(3).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_transform(Blackhole blackhole) {
+        service.namesFlux_transform(3).subscribe(blackhole::consume);
+    }
+}
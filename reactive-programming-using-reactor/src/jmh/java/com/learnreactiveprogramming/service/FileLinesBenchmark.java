@@ -0,0 +1,70 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/*
+ Reading a names file (one name per line) with MappedFileFlux.lines against Files.lines + Flux.fromStream,
+ both on their own and as the source of namesFlux_map.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FileLinesBenchmark {
+
+    @Param({"1000", "1000000"})
+    int size;
+
+    Path namesFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        namesFile = Files.createTempFile("names", ".txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(namesFile)) {
+            for (String name : BenchmarkNames.of(size)) {
+                writer.write(name);
+                writer.newLine();
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(namesFile);
+    }
+
+    Flux<String> filesLines() {
+        return Flux.using(() -> Files.lines(namesFile), Flux::fromStream, Stream::close);
+    }
+
+    @Benchmark
+    public void mappedFileFlux(Blackhole blackhole) {
+        MappedFileFlux.lines(namesFile).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void filesLines(Blackhole blackhole) {
+        filesLines().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_map_mappedFileFlux(Blackhole blackhole) {
+        new FluxAndMonoGeneratorService(MappedFileFlux.lines(namesFile)).namesFlux_map().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_map_filesLines(Blackhole blackhole) {
+        new FluxAndMonoGeneratorService(filesLines()).namesFlux_map().subscribe(blackhole::consume);
+    }
+}
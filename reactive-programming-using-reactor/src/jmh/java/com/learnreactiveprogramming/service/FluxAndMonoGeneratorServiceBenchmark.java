@@ -0,0 +1,73 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+ Benchmarks the synchronous pipelines of FluxAndMonoGeneratorService with inputs from the 3 sample names up to millions.
+ Run with: ./gradlew :reactive-programming-using-reactor:jmh
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FluxAndMonoGeneratorServiceBenchmark {
+
+    @Param({"3", "1000", "100000", "1000000"})
+    int size;
+
+    // same length filter as the unit tests: ALEX, CHLOE pass and BEN is dropped
+    int stringLength = 3;
+
+    FluxAndMonoGeneratorService fluxAndMonoGeneratorService;
+
+    @Setup
+    public void setUp() {
+        fluxAndMonoGeneratorService = new FluxAndMonoGeneratorService(BenchmarkNames.of(size));
+    }
+
+    @Benchmark
+    public void namesFlux_map(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_map().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_filter(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_filter(stringLength).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_flatmap(stringLength).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_transform(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_transform(stringLength).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_defaultIfEmpty(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_defaultIfEmpty(stringLength).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_switchIfEmpty(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_switchIfEmpty(stringLength).subscribe(blackhole::consume);
+    }
+
+    // concat and concatWith always emit the fixed A..F, size only changes the other benchmarks
+    @Benchmark
+    public void namesFlux_concat(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_concat().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void namesFlux_concatWith(Blackhole blackhole) {
+        fluxAndMonoGeneratorService.namesFlux_concatWith().subscribe(blackhole::consume);
+    }
+}
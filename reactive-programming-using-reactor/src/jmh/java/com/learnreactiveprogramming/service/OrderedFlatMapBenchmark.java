@@ -0,0 +1,73 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ concatMap vs flatMap vs flatMapSequential with bounded concurrency over the delayed split.
+ delayMillis = 0 shows the operator overhead, delayMillis = 1 shows how much waiting the concurrency hides.
+ SampleTime reports the latency percentiles of a whole run, Throughput the runs per second.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OrderedFlatMapBenchmark {
+
+    @Param({"100", "1000"})
+    int size;
+
+    @Param({"0", "1"})
+    int delayMillis;
+
+    @Param({"4", "32"})
+    int concurrency;
+
+    @Param({"32"})
+    int prefetch;
+
+    int stringLength = 3;
+
+    Scheduler scheduler;
+
+    FluxAndMonoGeneratorService fluxAndMonoGeneratorService;
+
+    @Setup
+    public void setUp() {
+        scheduler = Schedulers.newParallel("benchmark");
+        fluxAndMonoGeneratorService = new FluxAndMonoGeneratorService(BenchmarkNames.of(size),
+                scheduler, DelayModel.fixed(Duration.ofMillis(delayMillis)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public void namesFlux_concatmap(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_concatmap(stringLength).blockLast());
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap_async(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_flatmap_async(stringLength).blockLast());
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap_async_bounded(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_flatmap_async(stringLength, concurrency, prefetch).blockLast());
+    }
+
+    @Benchmark
+    public void namesFlux_flatmapSequential_async(Blackhole blackhole) {
+        blackhole.consume(fluxAndMonoGeneratorService.namesFlux_flatmapSequential_async(stringLength, concurrency, prefetch).blockLast());
+    }
+}
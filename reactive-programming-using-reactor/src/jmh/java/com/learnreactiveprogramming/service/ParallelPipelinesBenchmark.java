@@ -0,0 +1,80 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/*
+ The ParallelFlux pipelines against their sequential versions.
+ parallelism = 0 runs the sequential pipeline, compare it with the other rail counts for each size.
+ The results depend on the cores of the machine: -p parallelism=... can be set up to its core count.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParallelPipelinesBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    int size;
+
+    @Param({"0", "1", "2", "4", "8"})
+    int parallelism;
+
+    @Param({"false", "true"})
+    boolean ordered;
+
+    @Param({"256"})
+    int prefetch;
+
+    int stringLength = 3;
+
+    Scheduler scheduler;
+
+    FluxAndMonoGeneratorService fluxAndMonoGeneratorService;
+
+    @Setup
+    public void setUp() {
+        scheduler = Schedulers.newParallel("benchmark", Math.max(parallelism, 1));
+        fluxAndMonoGeneratorService = new FluxAndMonoGeneratorService(BenchmarkNames.of(size),
+                scheduler, DelayModel.fixed(Duration.ZERO));
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.dispose();
+    }
+
+    @Benchmark
+    public void namesFlux_map(Blackhole blackhole) {
+        if (parallelism == 0) {
+            fluxAndMonoGeneratorService.namesFlux_map().subscribe(blackhole::consume);
+        } else {
+            blackhole.consume(fluxAndMonoGeneratorService.namesFlux_map_parallel(parallelism, prefetch, ordered).blockLast());
+        }
+    }
+
+    @Benchmark
+    public void namesFlux_filter(Blackhole blackhole) {
+        if (parallelism == 0) {
+            fluxAndMonoGeneratorService.namesFlux_filter(stringLength).subscribe(blackhole::consume);
+        } else {
+            blackhole.consume(fluxAndMonoGeneratorService.namesFlux_filter_parallel(stringLength, parallelism, prefetch, ordered).blockLast());
+        }
+    }
+
+    @Benchmark
+    public void namesFlux_flatmap(Blackhole blackhole) {
+        if (parallelism == 0) {
+            fluxAndMonoGeneratorService.namesFlux_flatmap(stringLength).subscribe(blackhole::consume);
+        } else {
+            blackhole.consume(fluxAndMonoGeneratorService.namesFlux_flatmap_parallel(stringLength, parallelism, prefetch, ordered).blockLast());
+        }
+    }
+}
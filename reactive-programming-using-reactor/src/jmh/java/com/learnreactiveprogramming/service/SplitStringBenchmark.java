@@ -0,0 +1,46 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ Compares splitting with String.split("") against CharacterFlux.
+ One operation is one name, so gc.alloc.rate.norm is the garbage per input name.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SplitStringBenchmark {
+
+    private static final int NAMES = 1000;
+
+    List<String> names;
+
+    @Setup
+    public void setUp() {
+        names = BenchmarkNames.of(NAMES);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public void stringSplit(Blackhole blackhole) {
+        for (String name : names) {
+            Flux.fromArray(name.split("")).subscribe(blackhole::consume);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NAMES)
+    public void characterFlux(Blackhole blackhole) {
+        for (String name : names) {
+            CharacterFlux.split(name).subscribe(blackhole::consume);
+        }
+    }
+}
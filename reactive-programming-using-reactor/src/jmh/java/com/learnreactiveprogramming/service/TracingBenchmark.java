@@ -0,0 +1,92 @@
+package com.learnreactiveprogramming.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/*
+ The cost of observing a pipeline: nothing, .log() writing every signal through logback (to a file),
+ and SignalTracer switched off, sampling 1 in 100 onNext, recording only slow onNext and recording every signal.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TracingBenchmark {
+
+    @Param({"1000", "100000"})
+    int size;
+
+    List<String> names;
+
+    SignalTracer off;
+    SignalTracer sampled;
+    SignalTracer slowOnly;
+    SignalTracer everySignal;
+
+    @Setup
+    public void setUp() {
+        names = BenchmarkNames.of(size);
+        off = new SignalTracer(4096);
+        sampled = tracer(100, null);
+        slowOnly = tracer(0, Duration.ofMillis(1));
+        everySignal = tracer(1, null);
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (SignalTracer tracer : List.of(sampled, slowOnly, everySignal)) {
+            tracer.stopLogging();
+        }
+    }
+
+    SignalTracer tracer(int sampleEvery, Duration slowThreshold) {
+        SignalTracer tracer = new SignalTracer(4096);
+        tracer.setSampleEvery(sampleEvery);
+        tracer.setSlowThreshold(slowThreshold);
+        tracer.setEnabled(true);
+        tracer.startLogging(Duration.ofMillis(100));
+        return tracer;
+    }
+
+    Flux<String> pipeline() {
+        return Flux.fromIterable(names)
+                .map(String::toUpperCase);
+    }
+
+    @Benchmark
+    public void noLog(Blackhole blackhole) {
+        pipeline().subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void log(Blackhole blackhole) {
+        pipeline().log("benchmark.log").subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void tracerOff(Blackhole blackhole) {
+        pipeline().transform(off.traceFlux("tracerOff")).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void tracerSampled(Blackhole blackhole) {
+        pipeline().transform(sampled.traceFlux("tracerSampled")).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void tracerSlowOnly(Blackhole blackhole) {
+        pipeline().transform(slowOnly.traceFlux("tracerSlowOnly")).subscribe(blackhole::consume);
+    }
+
+    @Benchmark
+    public void tracerEverySignal(Blackhole blackhole) {
+        pipeline().transform(everySignal.traceFlux("tracerEverySignal")).subscribe(blackhole::consume);
+    }
+}
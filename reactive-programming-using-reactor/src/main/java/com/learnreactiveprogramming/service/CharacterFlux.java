@@ -0,0 +1,158 @@
+package com.learnreactiveprogramming.service;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+
+/*
+ Emits the characters of a String one by one, eg. ALEX -> A, L, E, X.
+ Replaces name.split("") which goes through the regex engine and allocates a String[] for every name.
+ - walks the String by code point, so a surrogate pair (eg. an emoji) is emitted as one element
+ - ASCII characters are emitted from a cached table, so uppercase names allocate nothing per character
+ - only emits as many characters as the subscriber requested (backpressure)
+ An empty String completes without emitting.
+ */
+public final class CharacterFlux extends Flux<String> {
+
+    private static final String[] ASCII = new String[128];
+
+    static {
+        for (int i = 0; i < ASCII.length; i++) {
+            ASCII[i] = String.valueOf((char) i);
+        }
+    }
+
+    private final String value;
+
+    private CharacterFlux(String value) {
+        this.value = value;
+    }
+
+    public static Flux<String> split(String value) {
+        return new CharacterFlux(value);
+    }
+
+    // same characters as split(value) but collected straight into a List, for code that is already on a worker thread
+    static List<String> characters(String value) {
+        List<String> characters = new ArrayList<>(value.length());
+        for (int i = 0; i < value.length(); ) {
+            String next = codePointAt(value, i);
+            i += next.length();
+            characters.add(next);
+        }
+        return characters;
+    }
+
+    // the String for the code point starting at index, cached when it is ASCII
+    static String codePointAt(String value, int index) {
+        char c = value.charAt(index);
+        if (c < ASCII.length) {
+            return ASCII[c];
+        }
+        int codePoint = value.codePointAt(index);
+        return new String(Character.toChars(codePoint));
+    }
+
+    @Override
+    public void subscribe(CoreSubscriber<? super String> actual) {
+        if (value.isEmpty()) {
+            Operators.complete(actual);
+            return;
+        }
+        actual.onSubscribe(new CharacterSubscription(actual, value));
+    }
+
+    static final class CharacterSubscription implements Subscription {
+
+        private static final AtomicLongFieldUpdater<CharacterSubscription> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(CharacterSubscription.class, "requested");
+
+        private final CoreSubscriber<? super String> actual;
+        private final String value;
+
+        private int index;
+        private volatile long requested;
+        private volatile boolean cancelled;
+
+        CharacterSubscription(CoreSubscriber<? super String> actual, String value) {
+            this.actual = actual;
+            this.value = value;
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                // only the call that moves requested away from 0 emits, the others just add to the demand
+                if (Operators.addCap(REQUESTED, this, n) == 0) {
+                    if (n == Long.MAX_VALUE) {
+                        fastPath();
+                    } else {
+                        slowPath(n);
+                    }
+                }
+            }
+        }
+
+        private void fastPath() {
+            String s = value;
+            int length = s.length();
+            for (int i = index; i < length; ) {
+                if (cancelled) {
+                    return;
+                }
+                String next = codePointAt(s, i);
+                i += next.length();
+                actual.onNext(next);
+            }
+            if (!cancelled) {
+                actual.onComplete();
+            }
+        }
+
+        private void slowPath(long n) {
+            String s = value;
+            int length = s.length();
+            int i = index;
+            long emitted = 0L;
+
+            for (;;) {
+                while (emitted != n && i < length) {
+                    if (cancelled) {
+                        return;
+                    }
+                    String next = codePointAt(s, i);
+                    i += next.length();
+                    actual.onNext(next);
+                    emitted++;
+                }
+
+                if (i == length) {
+                    if (!cancelled) {
+                        actual.onComplete();
+                    }
+                    return;
+                }
+
+                n = requested;
+                if (n == emitted) {
+                    index = i;
+                    n = REQUESTED.addAndGet(this, -emitted);
+                    if (n == 0L) {
+                        return;
+                    }
+                    emitted = 0L;
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
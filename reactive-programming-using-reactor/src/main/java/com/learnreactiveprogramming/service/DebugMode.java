@@ -0,0 +1,9 @@
+package com.learnreactiveprogramming.service;
+
+// how much assembly information an error carries, from the cheapest to the most expensive
+public enum DebugMode {
+    OFF,          // nothing, the error only has the stack trace of where it was signalled
+    CHECKPOINTS,  // the light checkpoint(description) of each pipeline, no stack trace is captured
+    AGENT,        // ReactorDebugAgent (reactor-tools) adds the call site of every operator when the classes are loaded
+    HOOKS         // Hooks.onOperatorDebug() captures a stack trace every time an operator is assembled
+}
@@ -0,0 +1,64 @@
+package com.learnreactiveprogramming.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.tools.agent.ReactorDebugAgent;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/*
+ Picks the DebugMode once at startup: -Ddebug.tracing.mode=off|checkpoints|agent|hooks (default off).
+ install() has to run before the pipelines are assembled, eg. first thing in main.
+ The pipelines add checkpoint(name) to themselves, it is a no-op when the mode is OFF.
+ DebugModeBenchmark measures what each mode costs, CHECKPOINTS is the one meant to stay on in production.
+ */
+public final class DebugTracing {
+
+    public static final String MODE_PROPERTY = "debug.tracing.mode";
+
+    private static volatile DebugMode mode = DebugMode.OFF;
+    private static boolean agentInstalled;
+
+    private DebugTracing() {
+    }
+
+    public static DebugMode install() {
+        String value = System.getProperty(MODE_PROPERTY, DebugMode.OFF.name());
+        return install(DebugMode.valueOf(value.trim().toUpperCase(Locale.ROOT)));
+    }
+
+    public static synchronized DebugMode install(DebugMode debugMode) {
+        Hooks.resetOnOperatorDebug();
+        switch (debugMode) {
+            case AGENT:
+                // the agent can't be removed again, switching to another mode only stops the checkpoints/hooks
+                if (!agentInstalled) {
+                    ReactorDebugAgent.init();
+                    ReactorDebugAgent.processExistingClasses();
+                    agentInstalled = true;
+                }
+                break;
+            case HOOKS:
+                Hooks.onOperatorDebug();
+                break;
+            default:
+                break;
+        }
+        mode = debugMode;
+        return debugMode;
+    }
+
+    public static DebugMode mode() {
+        return mode;
+    }
+
+    public static <T> Function<Flux<T>, Flux<T>> checkpoint(String description) {
+        return flux -> mode == DebugMode.OFF ? flux : flux.checkpoint(description);
+    }
+
+    public static <T> Function<Mono<T>, Mono<T>> checkpointMono(String description) {
+        return mono -> mode == DebugMode.OFF ? mono : mono.checkpoint(description);
+    }
+}
@@ -0,0 +1,55 @@
+package com.learnreactiveprogramming.service;
+
+import java.time.Duration;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/*
+ Decides how long splitString_withDelay waits between the characters of a name.
+ The unseeded models use ThreadLocalRandom, so concurrent pipelines don't contend on a shared Random.
+ The seeded models give the same sequence of delays on every run (eg. for benchmarks and virtual time tests).
+ */
+@FunctionalInterface
+public interface DelayModel {
+
+    Duration nextDelay();
+
+    static DelayModel fixed(Duration delay) {
+        return () -> delay;
+    }
+
+    // min inclusive, max exclusive. uniform(0ms, 1000ms) is the old new Random().nextInt(1000)
+    static DelayModel uniform(Duration min, Duration max) {
+        return uniform(min, max, ThreadLocalRandom::current);
+    }
+
+    static DelayModel uniform(Duration min, Duration max, long seed) {
+        Random random = new Random(seed);
+        return uniform(min, max, () -> random);
+    }
+
+    // median * e^(sigma * gaussian), mostly close to the median with a long tail of slow elements
+    static DelayModel logNormal(Duration median, double sigma) {
+        return logNormal(median, sigma, ThreadLocalRandom::current);
+    }
+
+    static DelayModel logNormal(Duration median, double sigma, long seed) {
+        Random random = new Random(seed);
+        return logNormal(median, sigma, () -> random);
+    }
+
+    private static DelayModel uniform(Duration min, Duration max, Supplier<Random> random) {
+        long minNanos = min.toNanos();
+        long rangeNanos = max.toNanos() - minNanos;
+        if (rangeNanos <= 0) {
+            throw new IllegalArgumentException("max must be greater than min");
+        }
+        return () -> Duration.ofNanos(minNanos + (long) (random.get().nextDouble() * rangeNanos));
+    }
+
+    private static DelayModel logNormal(Duration median, double sigma, Supplier<Random> random) {
+        long medianNanos = median.toNanos();
+        return () -> Duration.ofNanos(Math.round(medianNanos * Math.exp(sigma * random.get().nextGaussian())));
+    }
+}
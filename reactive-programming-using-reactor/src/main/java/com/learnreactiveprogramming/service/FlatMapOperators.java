@@ -0,0 +1,53 @@
+package com.learnreactiveprogramming.service;
+
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+
+import java.util.function.Function;
+
+/*
+ flatMap with the knobs spelled out, to be used with transform().
+ concurrency - how many inner publishers are subscribed at the same time
+ prefetch    - how many elements each inner publisher may emit before the downstream asks for them
+ maxInFlight - upper bound of concurrency * prefetch, ie. how many inner elements can be buffered at once
+
+ concatMap      = ordered, concurrency 1  (slow when the inner publishers wait, eg. splitString_withDelay)
+ flatMap        = concurrent, not ordered
+ flatMapOrdered = concurrent and ordered, the elements of later inners are buffered until the earlier ones complete
+ */
+public final class FlatMapOperators {
+
+    private FlatMapOperators() {
+    }
+
+    public static <T, R> Function<Flux<T>, Flux<R>> flatMapOrdered(Function<? super T, ? extends Publisher<? extends R>> mapper,
+                                                                    int concurrency, int prefetch) {
+        return flux -> flux.flatMapSequential(mapper, concurrency, prefetch);
+    }
+
+    public static <T, R> Function<Flux<T>, Flux<R>> flatMapOrderedMaxInFlight(Function<? super T, ? extends Publisher<? extends R>> mapper,
+                                                                               int concurrency, int maxInFlight) {
+        return flatMapOrdered(mapper, concurrency, prefetchFor(concurrency, maxInFlight));
+    }
+
+    public static <T, R> Function<Flux<T>, Flux<R>> flatMapUnordered(Function<? super T, ? extends Publisher<? extends R>> mapper,
+                                                                      int concurrency, int prefetch) {
+        return flux -> flux.flatMap(mapper, concurrency, prefetch);
+    }
+
+    public static <T, R> Function<Flux<T>, Flux<R>> flatMapUnorderedMaxInFlight(Function<? super T, ? extends Publisher<? extends R>> mapper,
+                                                                                 int concurrency, int maxInFlight) {
+        return flatMapUnordered(mapper, concurrency, prefetchFor(concurrency, maxInFlight));
+    }
+
+    // the biggest prefetch that keeps concurrency * prefetch within maxInFlight
+    public static int prefetchFor(int concurrency, int maxInFlight) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("concurrency must be positive but was " + concurrency);
+        }
+        if (maxInFlight < concurrency) {
+            throw new IllegalArgumentException("maxInFlight (" + maxInFlight + ") must be at least the concurrency (" + concurrency + ")");
+        }
+        return maxInFlight / concurrency;
+    }
+}
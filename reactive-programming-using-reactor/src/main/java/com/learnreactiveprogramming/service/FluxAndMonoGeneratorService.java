@@ -2,15 +2,66 @@ package com.learnreactiveprogramming.service;
 
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
 
 import java.time.Duration;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
 import java.util.function.Function;
 
 public class FluxAndMonoGeneratorService {
+
+    private final Flux<String> names;
+    private final Scheduler scheduler;
+    private final DelayModel delayModel;
+    // replaces .log(), switched on with -Dsignal.tracing.enabled=true or SignalTracer.global().setEnabled(true)
+    private final SignalTracer tracer = SignalTracer.global();
+    // per stage latency histograms, switched on with -Dstage.metrics.enabled=true or StageMetrics.global().setEnabled(true)
+    private final StageMetrics metrics = StageMetrics.global();
+
+    public FluxAndMonoGeneratorService() {
+        this(List.of("alex", "ben", "chloe"));
+    }
+
+    // names can be swapped so the same pipelines can be run over bigger inputs eg. in the jmh benchmarks
+    public FluxAndMonoGeneratorService(List<String> names) {
+        this(Flux.fromIterable(names));
+    }
+
+    // names from any cold source, eg. one name per line of a big file with MappedFileFlux.lines(path)
+    public FluxAndMonoGeneratorService(Flux<String> names) {
+        this(names, Schedulers.parallel(), DelayModel.uniform(Duration.ZERO, Duration.ofMillis(1000)));
+    }
+
+    // scheduler and delayModel drive splitString_withDelay, eg. a VirtualTimeScheduler with a fixed delay in tests
+    public FluxAndMonoGeneratorService(List<String> names, Scheduler scheduler, DelayModel delayModel) {
+        this(Flux.fromIterable(names), scheduler, delayModel);
+    }
+
+    public FluxAndMonoGeneratorService(Flux<String> names, Scheduler scheduler, DelayModel delayModel) {
+        this.names = names;
+        this.scheduler = scheduler;
+        this.delayModel = delayModel;
+    }
+
+    // every pipeline ends with its checkpoint (see DebugTracing), stage metrics and the tracer, all named after the pipeline
+    private <T> Function<Flux<T>, Flux<T>> observed(String name) {
+        return flux -> flux.transform(DebugTracing.checkpoint(name))
+                .transform(metrics.stageFlux(name))
+                .transform(tracer.traceFlux(name));
+    }
+
+    private <T> Function<Mono<T>, Mono<T>> observedMono(String name) {
+        return mono -> mono.transform(DebugTracing.checkpointMono(name))
+                .transform(metrics.stageMono(name))
+                .transform(tracer.traceMono(name));
+    }
+
     public Flux<String> namesFlux() {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe")); // in real data comes from db or service
+        return names; // in real data comes from db or service
     }
 
     public Mono<String> nameMono() {
@@ -18,7 +69,7 @@ public class FluxAndMonoGeneratorService {
     }
 
     public Flux<String> namesFlux_map() {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .map(String::toUpperCase); // in real data comes from db or service
     }
 
@@ -26,36 +77,35 @@ public class FluxAndMonoGeneratorService {
         return Mono.just("alex")
                 .map(String::toUpperCase)
                 .flatMap(this::spitStringMono)
-                .log();
+                .transform(observedMono("nameMono_flatmap"));
     }
 
     public Flux<String> nameMono_flatMapMany() {
         return Mono.just("alex")
                 .map(String::toUpperCase)
                 .flatMapMany(this::splitStringFlux)  // flatMapMany requires function who returns flux
-                .log();
+                .transform(observed("nameMono_flatMapMany"));
     }
 
     private Mono<List<String>> spitStringMono(String s) {
-        String[] charArray = s.split("");
-        List<String> charList = List.of(charArray);
-        return Mono.just(charList);
+        return CharacterFlux.split(s)
+                .collectList();
     }
 
     public Flux<String> namesFlux_filter(int stringLength) {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .filter(name -> name.length() > stringLength)
                 .map(s->s.length()+"-"+s) // 4-alex 5-chloe
-                .log();
+                .transform(observed("namesFlux_filter"));
     }
 
     public Flux<String> namesFlux_flatmap(int stringLength) {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .map(String::toUpperCase)
                 .filter(name -> name.length() > stringLength)
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
                 .flatMap(s -> splitStringFlux(s))
-                .log();
+                .transform(observed("namesFlux_flatmap"));
     }
 
     public Flux<String> namesFlux_transform(int stringLength) {
@@ -69,11 +119,11 @@ public class FluxAndMonoGeneratorService {
         Function<Flux<String>, Flux<String>> filterMap = n -> n.map(String::toUpperCase)
                 .filter(name -> name.length() > stringLength);
 
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .transform(filterMap)
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
                 .flatMap(s -> splitStringFlux(s))
-                .log();
+                .transform(observed("namesFlux_transform"));
     }
 
     public Flux<String> namesFlux_defaultIfEmpty(int stringLength) {
@@ -82,11 +132,11 @@ public class FluxAndMonoGeneratorService {
                 .filter(name -> name.length() > stringLength)
                 .flatMap(s -> splitStringFlux(s));
 
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .transform(filterMap)
                 .defaultIfEmpty("default") // takes the parameter T eg. String in this case
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
-                .log();
+                .transform(observed("namesFlux_defaultIfEmpty"));
     }
 
     public Flux<String> namesFlux_switchIfEmpty(int stringLength) {
@@ -98,31 +148,131 @@ public class FluxAndMonoGeneratorService {
         Flux<String> defaultFlux = Flux.just("default")
                                         .transform(filterMap);
 
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .transform(filterMap)
                 .switchIfEmpty(defaultFlux) // takes parameter as Publisher eg. like Flux in this case
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
-                .log();
+                .transform(observed("namesFlux_switchIfEmpty"));
     }
 
     // the order will be jumbled because of the delay.
     public Flux<String> namesFlux_flatmap_async(int stringLength) {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .map(String::toUpperCase)
                 .filter(name -> name.length() > stringLength)
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
                 .flatMap(s -> splitString_withDelay(s))
-                .log();
+                .transform(observed("namesFlux_flatmap_async"));
     }
 
     // used same as flatMap but preserves the ordering
     public Flux<String> namesFlux_concatmap(int stringLength) {
-        return Flux.fromIterable(List.of("alex", "ben", "chloe"))
+        return names
                 .map(String::toUpperCase)
                 .filter(name -> name.length() > stringLength)
+                // the stages before and after concatMap show how long each name waits for the previous one to be split
+                .transform(metrics.stageFlux("namesFlux_concatmap.filter"))
                 // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
                 .concatMap(s -> splitString_withDelay(s))
-                .log();
+                .transform(observed("namesFlux_concatmap"));
+    }
+
+    // flatMap with at most concurrency names split at the same time, the order is still jumbled
+    public Flux<String> namesFlux_flatmap_async(int stringLength, int concurrency, int prefetch) {
+        return names
+                .map(String::toUpperCase)
+                .filter(name -> name.length() > stringLength)
+                .transform(FlatMapOperators.flatMapUnordered(this::splitString_withDelay, concurrency, prefetch))
+                .transform(observed("namesFlux_flatmap_async"));
+    }
+
+    // the names are split concurrently like flatMap but the characters come out in order like concatMap
+    public Flux<String> namesFlux_flatmapSequential_async(int stringLength, int concurrency, int prefetch) {
+        return names
+                .map(String::toUpperCase)
+                .filter(name -> name.length() > stringLength)
+                // ALEX, CHLOE -> A, L, E, X, C, H, L, O, E
+                .transform(FlatMapOperators.flatMapOrdered(this::splitString_withDelay, concurrency, prefetch))
+                .transform(observed("namesFlux_flatmapSequential_async"));
+    }
+
+    /*
+     ParallelFlux variants of namesFlux_map, namesFlux_filter and namesFlux_flatmap for big inputs.
+     The names are split into parallelism rails which run on the scheduler, prefetch is how many names each rail queues.
+     ordered = false merges the rails as they emit (fastest, order is jumbled)
+     ordered = true tags every name with its index and merges the rails back in that order
+     */
+    public Flux<String> namesFlux_map_parallel(int parallelism, int prefetch, boolean ordered) {
+        if (ordered) {
+            return orderedParallel(parallelism, prefetch, name -> List.of(name.toUpperCase()));
+        }
+        return names
+                .parallel(parallelism, prefetch)
+                .runOn(scheduler, prefetch)
+                .map(String::toUpperCase)
+                .sequential(prefetch);
+    }
+
+    public Flux<String> namesFlux_filter_parallel(int stringLength, int parallelism, int prefetch, boolean ordered) {
+        if (ordered) {
+            return orderedParallel(parallelism, prefetch, name -> name.length() > stringLength
+                    ? List.of(name.length() + "-" + name)
+                    : List.of());
+        }
+        return names
+                .parallel(parallelism, prefetch)
+                .runOn(scheduler, prefetch)
+                .filter(name -> name.length() > stringLength)
+                .map(s -> s.length() + "-" + s)
+                .sequential(prefetch);
+    }
+
+    public Flux<String> namesFlux_flatmap_parallel(int stringLength, int parallelism, int prefetch, boolean ordered) {
+        if (ordered) {
+            return orderedParallel(parallelism, prefetch, name -> {
+                String upperCaseName = name.toUpperCase();
+                return upperCaseName.length() > stringLength
+                        ? CharacterFlux.characters(upperCaseName)
+                        : List.of();
+            });
+        }
+        return names
+                .parallel(parallelism, prefetch)
+                .runOn(scheduler, prefetch)
+                .map(String::toUpperCase)
+                .filter(name -> name.length() > stringLength)
+                .flatMap(s -> splitStringFlux(s))
+                .sequential(prefetch);
+    }
+
+    // each name becomes (index, results) on its rail, the rails are merged by index and the results flattened again
+    private Flux<String> orderedParallel(int parallelism, int prefetch, Function<String, List<String>> work) {
+        return names
+                .index()
+                .parallel(parallelism, prefetch)
+                .runOn(scheduler, prefetch)
+                .map(indexedName -> Tuples.of(indexedName.getT1(), work.apply(indexedName.getT2())))
+                .ordered(Comparator.comparing(Tuple2::getT1), prefetch)
+                .flatMapIterable(Tuple2::getT2);
+    }
+
+    /*
+     A fast producer (a tick every producerPeriod) feeding a slow consumer (delayElements of consumerDelay).
+     Without the overflow stage the ticks pile up, the stage keeps them bounded with its OverflowPolicy.
+     overflowStage.metrics() shows how many ticks are buffered, dropped and emitted.
+     */
+    public Flux<Long> intervalFlux_overflow(OverflowStage<Long> overflowStage, Duration producerPeriod, Duration consumerDelay) {
+        return Flux.interval(producerPeriod, scheduler)
+                .transform(overflowStage)
+                .delayElements(consumerDelay, scheduler);
+    }
+
+    // the names are produced straight away but every name is split with a delay, the stage decides which names are kept
+    public Flux<String> namesFlux_overflow(OverflowStage<String> overflowStage) {
+        return names
+                .map(String::toUpperCase)
+                .transform(overflowStage)
+                .concatMap(s -> splitString_withDelay(s), 1);
     }
 
     public Flux<String> namesFlux_concat() {
@@ -142,19 +292,18 @@ public class FluxAndMonoGeneratorService {
     }
 
     public Flux<String> splitString_withDelay(String name) {
-        String[] charArray = name.split("");
-        int delay = new Random().nextInt(1000);
-        return Flux.fromArray(charArray)
-                .delayElements(Duration.ofMillis(delay));
+        Duration delay = delayModel.nextDelay();
+        return CharacterFlux.split(name)
+                .delayElements(delay, scheduler);
     }
 
     // ALEX -> A, L, E, X
     public Flux<String> splitStringFlux(String name) {
-        String[] charArray = name.split("");
-        return Flux.fromArray(charArray);
+        return CharacterFlux.split(name); // emits the characters without going through String.split("")
     }
 
     public static void main(String[] args) {
+        DebugTracing.install(); // -Ddebug.tracing.mode=checkpoints
         FluxAndMonoGeneratorService fluxAndMonoGeneratorService = new FluxAndMonoGeneratorService();
         fluxAndMonoGeneratorService.namesFlux_map()
                 .subscribe(name -> {
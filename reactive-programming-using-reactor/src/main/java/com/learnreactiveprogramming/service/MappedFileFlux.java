@@ -0,0 +1,188 @@
+package com.learnreactiveprogramming.service;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.SynchronousSink;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/*
+ Reads a (multi-GB) file through memory mapped regions instead of loading it onto the heap.
+ Both sources are built on Flux.generate, so a region is only mapped when the subscriber asks for the next element,
+ and the FileChannel is closed on complete, error or cancel.
+ - regions(path, regionSize) emits the file as read-only ByteBuffers of regionSize bytes
+ - lines(path, regionSize) emits the UTF-8 lines ("\n" or "\r\n", without the line break), like Files.lines
+ Only the bytes of each line are copied (to build its String). A line longer than regionSize gets a bigger region.
+ Reading a mapped region can page fault on disk, so subscribe on Schedulers.boundedElastic() when the file is not cached.
+ */
+public final class MappedFileFlux {
+
+    public static final int DEFAULT_REGION_SIZE = 1 << 20; // 1 MB
+
+    private MappedFileFlux() {
+    }
+
+    public static Flux<String> lines(Path path) {
+        return lines(path, DEFAULT_REGION_SIZE);
+    }
+
+    public static Flux<String> lines(Path path, int regionSize) {
+        validate(regionSize);
+        return Flux.generate(() -> new LineReader(FileChannel.open(path, StandardOpenOption.READ), regionSize),
+                MappedFileFlux::nextLine,
+                LineReader::close);
+    }
+
+    public static Flux<ByteBuffer> regions(Path path, int regionSize) {
+        validate(regionSize);
+        return Flux.generate(() -> new RegionReader(FileChannel.open(path, StandardOpenOption.READ), regionSize),
+                MappedFileFlux::nextRegion,
+                RegionReader::close);
+    }
+
+    private static void validate(int regionSize) {
+        if (regionSize <= 0) {
+            throw new IllegalArgumentException("regionSize must be positive but was " + regionSize);
+        }
+    }
+
+    private static LineReader nextLine(LineReader reader, SynchronousSink<String> sink) {
+        try {
+            String line = reader.nextLine();
+            if (line == null) {
+                sink.complete();
+            } else {
+                sink.next(line);
+            }
+        } catch (IOException e) {
+            sink.error(e);
+        }
+        return reader;
+    }
+
+    private static RegionReader nextRegion(RegionReader reader, SynchronousSink<ByteBuffer> sink) {
+        try {
+            ByteBuffer region = reader.nextRegion();
+            if (region == null) {
+                sink.complete();
+            } else {
+                sink.next(region);
+            }
+        } catch (IOException e) {
+            sink.error(e);
+        }
+        return reader;
+    }
+
+    private static void close(FileChannel channel) {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static final class RegionReader {
+
+        private final FileChannel channel;
+        private final int regionSize;
+        private long position;
+
+        RegionReader(FileChannel channel, int regionSize) {
+            this.channel = channel;
+            this.regionSize = regionSize;
+        }
+
+        ByteBuffer nextRegion() throws IOException {
+            long size = channel.size();
+            if (position >= size) {
+                return null;
+            }
+            long length = Math.min(regionSize, size - position);
+            MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            position += length;
+            return region.asReadOnlyBuffer();
+        }
+
+        void close() {
+            MappedFileFlux.close(channel);
+        }
+    }
+
+    static final class LineReader {
+
+        private final FileChannel channel;
+        private final long size;
+        private final int regionSize;
+
+        private MappedByteBuffer region;
+        private long regionStart; // file offset of region index 0
+        private int position;     // where the next line starts inside the region
+        private byte[] lineBytes = new byte[128];
+
+        LineReader(FileChannel channel, int regionSize) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.regionSize = regionSize;
+        }
+
+        String nextLine() throws IOException {
+            if (regionStart + position >= size) {
+                return null;
+            }
+            if (region == null) {
+                map(0, regionSize);
+            }
+            int end = indexOfNewLine();
+            while (end < 0 && regionStart + region.limit() < size) {
+                // the line goes past the region, remap from the start of the line (twice as big if the line alone fills it)
+                long lineStart = regionStart + position;
+                int length = position == 0 ? (int) Math.min(Integer.MAX_VALUE, 2L * region.limit()) : regionSize;
+                map(lineStart, length);
+                end = indexOfNewLine();
+            }
+            if (end < 0) {
+                end = region.limit(); // last line without a line break
+            }
+
+            int lineEnd = end > position && region.get(end - 1) == '\r' ? end - 1 : end;
+            String line = decode(position, lineEnd - position);
+            position = end + 1;
+            return line;
+        }
+
+        private void map(long start, int length) throws IOException {
+            regionStart = start;
+            position = 0;
+            region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(length, size - start));
+        }
+
+        private int indexOfNewLine() {
+            for (int i = position; i < region.limit(); i++) {
+                if (region.get(i) == '\n') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private String decode(int start, int length) {
+            if (lineBytes.length < length) {
+                lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+            }
+            region.position(start);
+            region.get(lineBytes, 0, length);
+            return new String(lineBytes, 0, length, StandardCharsets.UTF_8);
+        }
+
+        void close() {
+            MappedFileFlux.close(channel);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.learnreactiveprogramming.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// live counts of an OverflowStage, summed over all of its subscriptions
+public final class OverflowMetrics {
+
+    private final AtomicLong buffered = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong emitted = new AtomicLong();
+    private final AtomicLong maxBuffered = new AtomicLong();
+
+    void buffered(long delta) {
+        long current = buffered.addAndGet(delta);
+        maxBuffered.accumulateAndGet(current, Math::max);
+    }
+
+    void dropped() {
+        dropped.incrementAndGet();
+    }
+
+    void emitted() {
+        emitted.incrementAndGet();
+    }
+
+    // elements waiting in the buffers right now
+    public long getBuffered() {
+        return buffered.get();
+    }
+
+    // the most elements that were ever waiting at the same time
+    public long getMaxBuffered() {
+        return maxBuffered.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getEmitted() {
+        return emitted.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OverflowMetrics{buffered=" + getBuffered() + ", maxBuffered=" + getMaxBuffered()
+                + ", dropped=" + getDropped() + ", emitted=" + getEmitted() + "}";
+    }
+}
@@ -0,0 +1,10 @@
+package com.learnreactiveprogramming.service;
+
+// what OverflowStage does with a new element when its buffer is full
+public enum OverflowPolicy {
+    BUFFER,        // bounded buffer, fails with an OverflowException
+    DROP_OLDEST,   // drops the oldest buffered element to make room
+    DROP_LATEST,   // drops the new element
+    LATEST_ONLY,   // buffer of 1 that always holds the newest element
+    BLOCK          // blocks the producer until there is room, fails with an OverflowException after the timeout
+}
@@ -0,0 +1,334 @@
+package com.learnreactiveprogramming.service;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/*
+ Sits between a fast producer that ignores backpressure (eg. Flux.interval) and a slow consumer (eg. delayElements).
+ It requests everything from the producer, keeps at most capacity elements and applies the OverflowPolicy when full,
+ so the memory used by the stage stays bounded however far the consumer falls behind.
+ Use it with transform(), the same stage can be shared by several pipelines and metrics() adds up all of them.
+
+ Flux.interval(Duration.ofMillis(1))
+         .transform(OverflowStage.of(OverflowPolicy.DROP_OLDEST, 16))
+         .delayElements(Duration.ofMillis(100))
+ */
+public final class OverflowStage<T> implements Function<Flux<T>, Flux<T>> {
+
+    private final OverflowPolicy policy;
+    private final int capacity;
+    private final Duration blockTimeout;
+    private final OverflowMetrics metrics = new OverflowMetrics();
+
+    private OverflowStage(OverflowPolicy policy, int capacity, Duration blockTimeout) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive but was " + capacity);
+        }
+        this.policy = policy;
+        this.capacity = policy == OverflowPolicy.LATEST_ONLY ? 1 : capacity;
+        this.blockTimeout = blockTimeout;
+    }
+
+    // BLOCK needs a timeout, use blockWithTimeout
+    public static <T> OverflowStage<T> of(OverflowPolicy policy, int capacity) {
+        if (policy == OverflowPolicy.BLOCK) {
+            throw new IllegalArgumentException("use blockWithTimeout(capacity, timeout) for " + policy);
+        }
+        return new OverflowStage<>(policy, capacity, Duration.ZERO);
+    }
+
+    public static <T> OverflowStage<T> latestOnly() {
+        return new OverflowStage<>(OverflowPolicy.LATEST_ONLY, 1, Duration.ZERO);
+    }
+
+    public static <T> OverflowStage<T> blockWithTimeout(int capacity, Duration timeout) {
+        return new OverflowStage<>(OverflowPolicy.BLOCK, capacity, timeout);
+    }
+
+    public OverflowMetrics metrics() {
+        return metrics;
+    }
+
+    @Override
+    public Flux<T> apply(Flux<T> flux) {
+        return new OverflowFlux<>(flux, this);
+    }
+
+    static final class OverflowFlux<T> extends Flux<T> {
+
+        private final Flux<T> source;
+        private final OverflowStage<T> stage;
+
+        OverflowFlux(Flux<T> source, OverflowStage<T> stage) {
+            this.source = source;
+            this.stage = stage;
+        }
+
+        @Override
+        public void subscribe(CoreSubscriber<? super T> actual) {
+            source.subscribe(new OverflowSubscriber<>(actual, stage));
+        }
+    }
+
+    static final class OverflowSubscriber<T> implements CoreSubscriber<T>, Subscription {
+
+        @SuppressWarnings("rawtypes")
+        private static final AtomicLongFieldUpdater<OverflowSubscriber> REQUESTED =
+                AtomicLongFieldUpdater.newUpdater(OverflowSubscriber.class, "requested");
+        @SuppressWarnings("rawtypes")
+        private static final AtomicIntegerFieldUpdater<OverflowSubscriber> WIP =
+                AtomicIntegerFieldUpdater.newUpdater(OverflowSubscriber.class, "wip");
+
+        private final CoreSubscriber<? super T> actual;
+        private final OverflowStage<T> stage;
+        private final OverflowMetrics metrics;
+
+        // the queue is shared by the producer (onNext) and the consumer (drain), the lock also lets BLOCK wait for room
+        private final ArrayDeque<T> queue;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notFull = lock.newCondition();
+
+        private Subscription upstream;
+        private Throwable error;
+        private volatile boolean done;
+        private volatile boolean cancelled;
+        private volatile long requested;
+        private volatile int wip;
+
+        OverflowSubscriber(CoreSubscriber<? super T> actual, OverflowStage<T> stage) {
+            this.actual = actual;
+            this.stage = stage;
+            this.metrics = stage.metrics;
+            this.queue = new ArrayDeque<>(Math.min(stage.capacity, 256));
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s;
+                actual.onSubscribe(this);
+                s.request(Long.MAX_VALUE);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            if (done || cancelled) {
+                Operators.onNextDropped(t, actual.currentContext());
+                return;
+            }
+            boolean overflow = false;
+            lock.lock();
+            try {
+                if (queue.size() == stage.capacity) {
+                    switch (stage.policy) {
+                        case DROP_OLDEST:
+                        case LATEST_ONLY:
+                            discard(queue.poll());
+                            metrics.buffered(-1);
+                            break;
+                        case DROP_LATEST:
+                            discard(t);
+                            return;
+                        case BLOCK:
+                            overflow = !awaitRoom();
+                            break;
+                        default:
+                            overflow = true;
+                    }
+                }
+                if (!overflow) {
+                    queue.offer(t);
+                    metrics.buffered(1);
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (overflow) {
+                upstream.cancel();
+                discard(t);
+                onError(Exceptions.failWithOverflow("OverflowStage " + stage.policy + " is full (capacity " + stage.capacity + ")"));
+                return;
+            }
+            drain();
+        }
+
+        // called with the lock held, false when there was no room before the timeout
+        private boolean awaitRoom() {
+            long nanos = stage.blockTimeout.toNanos();
+            try {
+                while (queue.size() == stage.capacity && !cancelled) {
+                    if (nanos <= 0L) {
+                        return false;
+                    }
+                    nanos = notFull.awaitNanos(nanos);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            return true;
+        }
+
+        private void discard(T t) {
+            metrics.dropped();
+            Operators.onDiscard(t, actual.currentContext());
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            if (done) {
+                Operators.onErrorDropped(t, actual.currentContext());
+                return;
+            }
+            error = t;
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            if (done) {
+                return;
+            }
+            done = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (Operators.validate(n)) {
+                Operators.addCap(REQUESTED, this, n);
+                drain();
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            upstream.cancel();
+            lock.lock();
+            try {
+                notFull.signalAll(); // wakes up a blocked producer
+            } finally {
+                lock.unlock();
+            }
+            if (WIP.getAndIncrement(this) == 0) {
+                clear();
+            }
+        }
+
+        private T poll() {
+            lock.lock();
+            try {
+                T t = queue.poll();
+                if (t != null) {
+                    metrics.buffered(-1);
+                    notFull.signal();
+                }
+                return t;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean isEmpty() {
+            lock.lock();
+            try {
+                return queue.isEmpty();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void clear() {
+            T t;
+            while ((t = poll()) != null) {
+                discard(t);
+            }
+        }
+
+        private void drain() {
+            if (WIP.getAndIncrement(this) != 0) {
+                return;
+            }
+            int missed = 1;
+            for (;;) {
+                long r = requested;
+                long e = 0L;
+
+                while (e != r) {
+                    boolean d = done;
+                    if (checkTerminated(d, false)) {
+                        return;
+                    }
+                    T t = poll();
+                    if (t == null) {
+                        if (checkTerminated(d, true)) {
+                            return;
+                        }
+                        break;
+                    }
+                    metrics.emitted();
+                    actual.onNext(t);
+                    e++;
+                }
+
+                if (e == r && checkTerminated(done, isEmpty())) {
+                    return;
+                }
+
+                if (e != 0L && r != Long.MAX_VALUE) {
+                    REQUESTED.addAndGet(this, -e);
+                }
+
+                missed = WIP.addAndGet(this, -missed);
+                if (missed == 0) {
+                    break;
+                }
+            }
+        }
+
+        // an error is delivered straight away (the buffered elements are dropped), a completion once the buffer is empty
+        private boolean checkTerminated(boolean d, boolean empty) {
+            if (cancelled) {
+                clear();
+                return true;
+            }
+            if (d) {
+                Throwable e = error;
+                if (e != null) {
+                    clear();
+                    actual.onError(e);
+                    return true;
+                }
+                if (empty) {
+                    actual.onComplete();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
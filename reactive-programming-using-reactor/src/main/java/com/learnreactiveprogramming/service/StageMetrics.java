@@ -0,0 +1,300 @@
+package com.learnreactiveprogramming.service;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import reactor.core.CoreSubscriber;
+import reactor.core.Fuseable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Hooks;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.util.context.Context;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/*
+ Where the time goes inside a pipeline: .transform(metrics.stageFlux("namesFlux_concatmap.filter")) after an operator
+ records, per stage name, for every subscription going through it
+ - onNext latency:  how long the downstream took to handle each element (inclusive, so the difference between two
+                    stages in a synchronous chain is the cost of the operators in between)
+ - onNext interval: the time since the previous element (or the first request), where the waiting of async stages shows up
+ - requests, the total demand (an unbounded request counts once as unbounded), cancels, completes and errors
+ The histograms are HdrHistograms in nanoseconds. report() formats all the stages, stages() gives the numbers.
+ installOnEachOperator() does the same for every operator of every pipeline assembled afterwards,
+ keyed by the operator name (map, filter, source(FluxRange)...), it is much more expensive and meant for a debugging session.
+ A stage subscriber sits between two operators, so it also turns off fusion across the stage.
+ The global metrics are switched on with -Dstage.metrics.enabled=true, when off a subscription skips the stage.
+ */
+public final class StageMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(StageMetrics.class);
+
+    private static final String HOOK_KEY = StageMetrics.class.getName();
+
+    private static final StageMetrics GLOBAL = createGlobal();
+
+    private final ConcurrentMap<String, Stage> stages = new ConcurrentHashMap<>();
+    private volatile boolean enabled;
+
+    private static StageMetrics createGlobal() {
+        StageMetrics metrics = new StageMetrics();
+        metrics.setEnabled(Boolean.getBoolean("stage.metrics.enabled"));
+        return metrics;
+    }
+
+    public static StageMetrics global() {
+        return GLOBAL;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public <T> Function<Flux<T>, Flux<T>> stageFlux(String name) {
+        Function<? super Publisher<T>, ? extends Publisher<T>> lift = lift(name);
+        return flux -> Flux.from(lift.apply(flux));
+    }
+
+    public <T> Function<Mono<T>, Mono<T>> stageMono(String name) {
+        Function<? super Publisher<T>, ? extends Publisher<T>> lift = lift(name);
+        return mono -> Mono.from(lift.apply(mono));
+    }
+
+    private <T> Function<? super Publisher<T>, ? extends Publisher<T>> lift(String name) {
+        return Operators.lift((scannable, actual) -> subscriber(name, actual));
+    }
+
+    public void installOnEachOperator() {
+        Hooks.onEachOperator(HOOK_KEY, Operators.lift((scannable, actual) -> subscriber(scannable.name(), actual)));
+    }
+
+    public static void uninstallOnEachOperator() {
+        Hooks.resetOnEachOperator(HOOK_KEY);
+    }
+
+    private <T> CoreSubscriber<? super T> subscriber(String name, CoreSubscriber<? super T> actual) {
+        if (!enabled) {
+            return actual;
+        }
+        return new StageSubscriber<>(actual, stages.computeIfAbsent(name, Stage::new));
+    }
+
+    // by stage name
+    public Map<String, Stage> stages() {
+        return new TreeMap<>(stages);
+    }
+
+    // null when nothing went through the stage yet
+    public Stage get(String name) {
+        return stages.get(name);
+    }
+
+    public void reset() {
+        stages.clear();
+    }
+
+    public String report() {
+        StringBuilder report = new StringBuilder(String.format("%-45s %8s %10s %10s %10s %10s %12s %9s %8s%n",
+                "stage", "subs", "onNext", "p50(us)", "p99(us)", "max(us)", "gap p99(us)", "requests", "cancel%"));
+        stages().values().forEach(stage -> report.append(stage).append(System.lineSeparator()));
+        return report.toString();
+    }
+
+    public void logReport() {
+        log.info("stage metrics{}{}", System.lineSeparator(), report());
+    }
+
+    public static final class Stage {
+
+        private final String name;
+        // 2 significant digits keeps each histogram at a few KB, enough to tell which stage is slow
+        private final Histogram onNextLatency = new ConcurrentHistogram(2);
+        private final Histogram onNextInterval = new ConcurrentHistogram(2);
+        private final LongAdder subscriptions = new LongAdder();
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder demand = new LongAdder();
+        private final LongAdder unboundedRequests = new LongAdder();
+        private final LongAdder cancels = new LongAdder();
+        private final LongAdder completes = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        Stage(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // copies, in nanoseconds
+        public Histogram getOnNextLatency() {
+            return onNextLatency.copy();
+        }
+
+        public Histogram getOnNextInterval() {
+            return onNextInterval.copy();
+        }
+
+        public long getOnNextCount() {
+            return onNextLatency.getTotalCount();
+        }
+
+        public long getSubscriptions() {
+            return subscriptions.sum();
+        }
+
+        public long getRequests() {
+            return requests.sum();
+        }
+
+        // the sum of the bounded requests
+        public long getDemand() {
+            return demand.sum();
+        }
+
+        public long getUnboundedRequests() {
+            return unboundedRequests.sum();
+        }
+
+        public long getCancels() {
+            return cancels.sum();
+        }
+
+        public long getCompletes() {
+            return completes.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        // cancelled subscriptions out of all the subscriptions, 0 when there were none
+        public double getCancelRate() {
+            long subscribed = getSubscriptions();
+            return subscribed == 0 ? 0.0 : (double) getCancels() / subscribed;
+        }
+
+        @Override
+        public String toString() {
+            Histogram latency = getOnNextLatency();
+            return String.format("%-45s %8d %10d %10.1f %10.1f %10.1f %12.1f %9d %8.1f",
+                    name, getSubscriptions(), latency.getTotalCount(),
+                    latency.getValueAtPercentile(50) / 1000.0,
+                    latency.getValueAtPercentile(99) / 1000.0,
+                    latency.getMaxValue() / 1000.0,
+                    onNextInterval.getValueAtPercentile(99) / 1000.0,
+                    getRequests(), 100 * getCancelRate());
+        }
+    }
+
+    // a QueueSubscription that never fuses, the lift of a Fuseable source hands it to subscribers expecting one
+    static final class StageSubscriber<T> implements CoreSubscriber<T>, Fuseable.QueueSubscription<T> {
+
+        private final CoreSubscriber<? super T> actual;
+        private final Stage stage;
+
+        private Subscription upstream;
+        private volatile long lastSignal; // first request, then the previous onNext
+
+        StageSubscriber(CoreSubscriber<? super T> actual, Stage stage) {
+            this.actual = actual;
+            this.stage = stage;
+        }
+
+        @Override
+        public Context currentContext() {
+            return actual.currentContext();
+        }
+
+        @Override
+        public void onSubscribe(Subscription s) {
+            if (Operators.validate(upstream, s)) {
+                upstream = s;
+                stage.subscriptions.increment();
+                actual.onSubscribe(this);
+            }
+        }
+
+        @Override
+        public void onNext(T t) {
+            long start = System.nanoTime();
+            long previous = lastSignal;
+            if (previous != 0L) {
+                stage.onNextInterval.recordValue(Math.max(0L, start - previous));
+            }
+            actual.onNext(t);
+            long end = System.nanoTime();
+            stage.onNextLatency.recordValue(end - start);
+            lastSignal = end;
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            stage.errors.increment();
+            actual.onError(t);
+        }
+
+        @Override
+        public void onComplete() {
+            stage.completes.increment();
+            actual.onComplete();
+        }
+
+        @Override
+        public void request(long n) {
+            stage.requests.increment();
+            if (n == Long.MAX_VALUE) {
+                stage.unboundedRequests.increment();
+            } else {
+                stage.demand.add(n);
+            }
+            if (lastSignal == 0L) {
+                lastSignal = System.nanoTime();
+            }
+            upstream.request(n);
+        }
+
+        @Override
+        public void cancel() {
+            stage.cancels.increment();
+            upstream.cancel();
+        }
+
+        @Override
+        public int requestFusion(int requestedMode) {
+            return Fuseable.NONE;
+        }
+
+        @Override
+        public T poll() {
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void clear() {
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CharacterFluxTest {
+
+    @Test
+    void split() {
+        Flux<String> characterFlux = CharacterFlux.split("ALEX");
+        StepVerifier.create(characterFlux)
+                .expectNext("A", "L", "E", "X")
+                .verifyComplete();
+    }
+
+    @Test
+    void split_empty() {
+        StepVerifier.create(CharacterFlux.split(""))
+                .verifyComplete();
+    }
+
+    @Test
+    void split_surrogatePair() {
+        String smiley = new String(Character.toChars(0x1F600));
+        Flux<String> characterFlux = CharacterFlux.split("a" + smiley + "\u00e9");
+        StepVerifier.create(characterFlux)
+                .expectNext("a", smiley, "\u00e9")
+                .verifyComplete();
+    }
+
+    @Test
+    void split_asciiIsCached() {
+        List<String> first = CharacterFlux.split("AB").collectList().block();
+        List<String> second = CharacterFlux.split("BA").collectList().block();
+        assertSame(first.get(0), second.get(1));
+        assertSame(first.get(1), second.get(0));
+    }
+
+    @Test
+    void split_backpressure() {
+        StepVerifier.create(CharacterFlux.split("CHLOE"), 0)
+                .expectSubscription()
+                .expectNoEvent(Duration.ofMillis(10))
+                .thenRequest(2)
+                .expectNext("C", "H")
+                .thenRequest(1)
+                .expectNext("L")
+                .thenRequest(5)
+                .expectNext("O", "E")
+                .verifyComplete();
+    }
+
+    @Test
+    void split_cancel() {
+        StepVerifier.create(CharacterFlux.split("CHLOE").take(2))
+                .expectNext("C", "H")
+                .verifyComplete();
+    }
+}
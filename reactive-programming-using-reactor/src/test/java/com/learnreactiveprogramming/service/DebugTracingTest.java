@@ -0,0 +1,73 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DebugTracingTest {
+
+    FluxAndMonoGeneratorService failingService = new FluxAndMonoGeneratorService(
+            Flux.just("alex").concatWith(Flux.error(new IllegalStateException("boom"))));
+
+    @AfterEach
+    void tearDown() {
+        DebugTracing.install(DebugMode.OFF);
+        System.clearProperty(DebugTracing.MODE_PROPERTY);
+    }
+
+    String traceback(Throwable error) {
+        return Arrays.toString(error.getSuppressed());
+    }
+
+    @Test
+    void install_fromSystemProperty() {
+        assertEquals(DebugMode.OFF, DebugTracing.install());
+
+        System.setProperty(DebugTracing.MODE_PROPERTY, "checkpoints");
+        assertEquals(DebugMode.CHECKPOINTS, DebugTracing.install());
+        assertEquals(DebugMode.CHECKPOINTS, DebugTracing.mode());
+    }
+
+    @Test
+    void install_unknownMode() {
+        System.setProperty(DebugTracing.MODE_PROPERTY, "verbose");
+        assertThrows(IllegalArgumentException.class, DebugTracing::install);
+    }
+
+    @Test
+    void off() {
+        DebugTracing.install(DebugMode.OFF);
+        StepVerifier.create(failingService.namesFlux_filter(3))
+                .expectNext("4-alex")
+                .verifyErrorSatisfies(error -> assertFalse(traceback(error).contains("namesFlux_filter")));
+    }
+
+    @Test
+    void checkpoints() {
+        DebugTracing.install(DebugMode.CHECKPOINTS);
+        StepVerifier.create(failingService.namesFlux_filter(3))
+                .expectNext("4-alex")
+                .verifyErrorSatisfies(error -> {
+                    String traceback = traceback(error);
+                    assertTrue(traceback.contains("namesFlux_filter"), traceback);
+                    assertFalse(traceback.contains("Flux.filter"), traceback);
+                });
+    }
+
+    @Test
+    void hooks() {
+        DebugTracing.install(DebugMode.HOOKS);
+        StepVerifier.create(failingService.namesFlux_filter(3))
+                .expectNext("4-alex")
+                .verifyErrorSatisfies(error -> {
+                    String traceback = traceback(error);
+                    assertTrue(traceback.contains("namesFlux_filter"), traceback);
+                    assertTrue(traceback.contains("Flux.filter"), traceback);
+                });
+    }
+}
@@ -0,0 +1,53 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DelayModelTest {
+
+    @Test
+    void fixed() {
+        DelayModel delayModel = DelayModel.fixed(Duration.ofMillis(5));
+        assertEquals(Duration.ofMillis(5), delayModel.nextDelay());
+        assertEquals(Duration.ofMillis(5), delayModel.nextDelay());
+    }
+
+    @Test
+    void uniform() {
+        DelayModel delayModel = DelayModel.uniform(Duration.ofMillis(10), Duration.ofMillis(20));
+        for (int i = 0; i < 1000; i++) {
+            Duration delay = delayModel.nextDelay();
+            assertTrue(delay.compareTo(Duration.ofMillis(10)) >= 0);
+            assertTrue(delay.compareTo(Duration.ofMillis(20)) < 0);
+        }
+    }
+
+    @Test
+    void uniform_invalidRange() {
+        assertThrows(IllegalArgumentException.class,
+                () -> DelayModel.uniform(Duration.ofMillis(20), Duration.ofMillis(10)));
+    }
+
+    @Test
+    void uniform_seeded() {
+        DelayModel first = DelayModel.uniform(Duration.ZERO, Duration.ofSeconds(1), 42L);
+        DelayModel second = DelayModel.uniform(Duration.ZERO, Duration.ofSeconds(1), 42L);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(first.nextDelay(), second.nextDelay());
+        }
+    }
+
+    @Test
+    void logNormal_seeded() {
+        DelayModel first = DelayModel.logNormal(Duration.ofMillis(100), 0.5, 7L);
+        DelayModel second = DelayModel.logNormal(Duration.ofMillis(100), 0.5, 7L);
+        for (int i = 0; i < 10; i++) {
+            Duration delay = first.nextDelay();
+            assertEquals(delay, second.nextDelay());
+            assertFalse(delay.isNegative());
+        }
+    }
+}
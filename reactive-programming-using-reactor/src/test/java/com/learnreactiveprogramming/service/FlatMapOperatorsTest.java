@@ -0,0 +1,61 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FlatMapOperatorsTest {
+
+    @Test
+    void flatMapOrdered() {
+        // the first inner is the slowest but its elements still come first
+        Flux<Integer> flux = Flux.just(3, 2, 1)
+                .transform(FlatMapOperators.flatMapOrdered(
+                        i -> Flux.just(i * 10, i * 10 + 1).delayElements(Duration.ofMillis(i * 20L)), 3, 2));
+
+        StepVerifier.create(flux)
+                .expectNext(30, 31, 20, 21, 10, 11)
+                .verifyComplete();
+    }
+
+    @Test
+    void flatMapOrdered_concurrency() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+
+        Flux<Integer> flux = Flux.range(1, 10)
+                .transform(FlatMapOperators.flatMapOrdered(
+                        i -> Flux.just(i)
+                                .delayElements(Duration.ofMillis(5))
+                                .doOnSubscribe(subscription -> maxActive.accumulateAndGet(active.incrementAndGet(), Math::max))
+                                .doOnTerminate(active::decrementAndGet), 2, 1));
+
+        StepVerifier.create(flux)
+                .expectNext(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)
+                .verifyComplete();
+        assertTrue(maxActive.get() <= 2);
+    }
+
+    @Test
+    void flatMapUnorderedMaxInFlight() {
+        Flux<Integer> flux = Flux.range(1, 5)
+                .transform(FlatMapOperators.flatMapUnorderedMaxInFlight(i -> Flux.range(i * 10, 3), 2, 8));
+
+        StepVerifier.create(flux)
+                .expectNextCount(15)
+                .verifyComplete();
+    }
+
+    @Test
+    void prefetchFor() {
+        assertEquals(4, FlatMapOperators.prefetchFor(4, 16));
+        assertEquals(2, FlatMapOperators.prefetchFor(3, 8));
+        assertThrows(IllegalArgumentException.class, () -> FlatMapOperators.prefetchFor(4, 3));
+        assertThrows(IllegalArgumentException.class, () -> FlatMapOperators.prefetchFor(0, 3));
+    }
+}
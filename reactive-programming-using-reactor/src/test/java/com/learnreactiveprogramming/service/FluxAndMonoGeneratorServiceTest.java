@@ -1,10 +1,17 @@
 package com.learnreactiveprogramming.service;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -30,6 +37,25 @@ class FluxAndMonoGeneratorServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void namesFlux_map_customNames() {
+        FluxAndMonoGeneratorService customNamesService = new FluxAndMonoGeneratorService(List.of("dan", "eve"));
+        Flux<String> namesFlux = customNamesService.namesFlux_map();
+        StepVerifier.create(namesFlux)
+                .expectNext("DAN", "EVE")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_map_fromFile(@TempDir Path tempDir) throws IOException {
+        Path namesFile = Files.write(tempDir.resolve("names.txt"), List.of("alex", "ben", "chloe"));
+        FluxAndMonoGeneratorService fileNamesService = new FluxAndMonoGeneratorService(MappedFileFlux.lines(namesFile));
+        Flux<String> namesFlux = fileNamesService.namesFlux_map();
+        StepVerifier.create(namesFlux)
+                .expectNext("ALEX", "BEN", "CHLOE")
+                .verifyComplete();
+    }
+
     @Test
     void namesFlux_filter() {
         int stringLength = 3;
@@ -67,6 +93,65 @@ class FluxAndMonoGeneratorServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void namesFlux_flatmap_async_virtualTime() {
+        int stringLength = 3;
+        // the scheduler has to be created inside the supplier so it is the virtual time one
+        StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of("alex", "ben", "chloe"),
+                        Schedulers.parallel(), DelayModel.fixed(Duration.ofSeconds(1)))
+                        .namesFlux_flatmap_async(stringLength))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(4))
+                .expectNextCount(8)
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("E")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_concatmap_virtualTime() {
+        int stringLength = 3;
+        StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of("alex", "ben", "chloe"),
+                        Schedulers.parallel(), DelayModel.fixed(Duration.ofSeconds(1)))
+                        .namesFlux_concatmap(stringLength))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(4))
+                .expectNext("A", "L", "E", "X")
+                .thenAwait(Duration.ofSeconds(5))
+                .expectNext("C", "H", "L", "O", "E")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_flatmap_async_boundedConcurrency_virtualTime() {
+        int stringLength = 3;
+        // only one name at a time, so it takes as long as concatMap
+        StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of("alex", "ben", "chloe"),
+                        Schedulers.parallel(), DelayModel.fixed(Duration.ofSeconds(1)))
+                        .namesFlux_flatmap_async(stringLength, 1, 4))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(4))
+                .expectNext("A", "L", "E", "X")
+                .thenAwait(Duration.ofSeconds(5))
+                .expectNext("C", "H", "L", "O", "E")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_flatmapSequential_async_virtualTime() {
+        int stringLength = 3;
+        // both names are split at the same time, so it takes 5 seconds instead of the 9 of concatMap but keeps the order
+        StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of("alex", "ben", "chloe"),
+                        Schedulers.parallel(), DelayModel.fixed(Duration.ofSeconds(1)))
+                        .namesFlux_flatmapSequential_async(stringLength, 2, 4))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(4))
+                .expectNext("A", "L", "E", "X", "C", "H", "L", "O")
+                .thenAwait(Duration.ofSeconds(1))
+                .expectNext("E")
+                .verifyComplete();
+    }
+
     @Test
     void nameMono_flatmap() {
         Mono<List<String>> nameMono = fluxAndMonoGeneratorService.nameMono_flatmap();
@@ -110,6 +195,53 @@ class FluxAndMonoGeneratorServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    void namesFlux_map_parallel() {
+        Flux<String> namesFlux = fluxAndMonoGeneratorService.namesFlux_map_parallel(2, 4, false);
+        StepVerifier.create(namesFlux)
+                .recordWith(ArrayList::new)
+                .expectNextCount(3)
+                .consumeRecordedWith(names -> assertTrue(names.containsAll(List.of("ALEX", "BEN", "CHLOE"))))
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_map_parallel_ordered() {
+        Flux<String> namesFlux = fluxAndMonoGeneratorService.namesFlux_map_parallel(2, 4, true);
+        StepVerifier.create(namesFlux)
+                .expectNext("ALEX", "BEN", "CHLOE")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_filter_parallel_ordered() {
+        int stringLength = 3;
+        Flux<String> namesFlux = fluxAndMonoGeneratorService.namesFlux_filter_parallel(stringLength, 2, 4, true);
+        StepVerifier.create(namesFlux)
+                .expectNext("4-alex", "5-chloe")
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_flatmap_parallel() {
+        int stringLength = 3;
+        Flux<String> namesFlux = fluxAndMonoGeneratorService.namesFlux_flatmap_parallel(stringLength, 2, 4, false);
+        StepVerifier.create(namesFlux)
+                .expectNextCount(9)
+                .verifyComplete();
+    }
+
+    @Test
+    void namesFlux_flatmap_parallel_ordered() {
+        int stringLength = 3;
+        FluxAndMonoGeneratorService manyNamesService = new FluxAndMonoGeneratorService(
+                List.of("alex", "ben", "chloe", "dan", "emily", "fred", "gus"));
+        Flux<String> namesFlux = manyNamesService.namesFlux_flatmap_parallel(stringLength, 3, 1, true);
+        StepVerifier.create(namesFlux)
+                .expectNext("A", "L", "E", "X", "C", "H", "L", "O", "E", "E", "M", "I", "L", "Y", "F", "R", "E", "D")
+                .verifyComplete();
+    }
+
     @Test
     void namesFlux_concat() {
         Flux<String> namesFlux = fluxAndMonoGeneratorService.namesFlux_concat();
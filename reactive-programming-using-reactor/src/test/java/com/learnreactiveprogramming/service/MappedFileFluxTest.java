@@ -0,0 +1,105 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MappedFileFluxTest {
+
+    @TempDir
+    Path tempDir;
+
+    Path write(String content) throws IOException {
+        return Files.write(tempDir.resolve("names.txt"), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void lines() throws IOException {
+        Path file = write("alex\nben\nchloe\n");
+        StepVerifier.create(MappedFileFlux.lines(file))
+                .expectNext("alex", "ben", "chloe")
+                .verifyComplete();
+    }
+
+    @Test
+    void lines_crlf_emptyLine_noTrailingLineBreak() throws IOException {
+        Path file = write("alex\r\n\r\nben\nchloe");
+        StepVerifier.create(MappedFileFlux.lines(file))
+                .expectNext("alex", "", "ben", "chloe")
+                .verifyComplete();
+    }
+
+    @Test
+    void lines_emptyFile() throws IOException {
+        Path file = write("");
+        StepVerifier.create(MappedFileFlux.lines(file))
+                .verifyComplete();
+    }
+
+    @Test
+    void lines_acrossRegions() throws IOException {
+        // regions of 4 bytes: lines are split between regions, longer than a region and multi-byte characters are cut
+        String longName = "maximilian-alexander";
+        Path file = write("alex\nben\n" + longName + "\nchlo\u00e9\nz\u00fcri\n");
+        StepVerifier.create(MappedFileFlux.lines(file, 4))
+                .expectNext("alex", "ben", longName, "chlo\u00e9", "z\u00fcri")
+                .verifyComplete();
+    }
+
+    @Test
+    void lines_sameAsFilesLines() throws IOException {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            content.append("name-").append(i).append('\n');
+        }
+        Path file = write(content.toString());
+        List<String> expected = Files.readAllLines(file);
+
+        assertEquals(expected, MappedFileFlux.lines(file, 1000).collectList().block());
+    }
+
+    @Test
+    void lines_backpressure() throws IOException {
+        Path file = write("alex\nben\nchloe\n");
+        StepVerifier.create(MappedFileFlux.lines(file), 1)
+                .expectNext("alex")
+                .thenRequest(1)
+                .expectNext("ben")
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    void lines_missingFile() {
+        StepVerifier.create(MappedFileFlux.lines(tempDir.resolve("missing.txt")))
+                .expectError(NoSuchFileException.class)
+                .verify();
+    }
+
+    @Test
+    void regions() throws IOException {
+        Path file = write("alex\nben\nchloe\n");
+        Flux<String> regions = MappedFileFlux.regions(file, 4)
+                .map(MappedFileFluxTest::toString);
+        StepVerifier.create(regions)
+                .expectNext("alex", "\nben", "\nchl", "oe\n")
+                .verifyComplete();
+    }
+
+    static String toString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
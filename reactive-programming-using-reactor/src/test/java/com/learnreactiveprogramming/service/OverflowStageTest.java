@@ -0,0 +1,145 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+import reactor.test.publisher.TestPublisher;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OverflowStageTest {
+
+    @Test
+    void buffer_underCapacity() {
+        OverflowStage<Integer> overflowStage = OverflowStage.of(OverflowPolicy.BUFFER, 10);
+        StepVerifier.create(Flux.range(1, 5).transform(overflowStage))
+                .expectNext(1, 2, 3, 4, 5)
+                .verifyComplete();
+        assertEquals(5, overflowStage.metrics().getEmitted());
+        assertEquals(0, overflowStage.metrics().getBuffered());
+    }
+
+    @Test
+    void buffer_overflow() {
+        OverflowStage<Integer> overflowStage = OverflowStage.of(OverflowPolicy.BUFFER, 3);
+        TestPublisher<Integer> producer = TestPublisher.create();
+        StepVerifier.create(producer.flux().transform(overflowStage), 0)
+                .then(() -> producer.next(1, 2, 3, 4))
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify();
+        producer.assertCancelled();
+        assertEquals(0, overflowStage.metrics().getBuffered());
+    }
+
+    @Test
+    void dropOldest() {
+        OverflowStage<Integer> overflowStage = OverflowStage.of(OverflowPolicy.DROP_OLDEST, 3);
+        TestPublisher<Integer> producer = TestPublisher.create();
+        StepVerifier.create(producer.flux().transform(overflowStage), 0)
+                .then(() -> producer.emit(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)) // all produced before the consumer asks for any
+                .thenRequest(10)
+                .expectNext(8, 9, 10)
+                .verifyComplete();
+        assertEquals(7, overflowStage.metrics().getDropped());
+        assertEquals(3, overflowStage.metrics().getMaxBuffered());
+    }
+
+    @Test
+    void dropLatest() {
+        OverflowStage<Integer> overflowStage = OverflowStage.of(OverflowPolicy.DROP_LATEST, 3);
+        TestPublisher<Integer> producer = TestPublisher.create();
+        StepVerifier.create(producer.flux().transform(overflowStage), 0)
+                .then(() -> producer.emit(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)) // all produced before the consumer asks for any
+                .thenRequest(10)
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+        assertEquals(7, overflowStage.metrics().getDropped());
+    }
+
+    @Test
+    void latestOnly() {
+        OverflowStage<Integer> overflowStage = OverflowStage.latestOnly();
+        TestPublisher<Integer> producer = TestPublisher.create();
+        StepVerifier.create(producer.flux().transform(overflowStage), 0)
+                .then(() -> producer.emit(1, 2, 3, 4, 5, 6, 7, 8, 9, 10)) // all produced before the consumer asks for any
+                .thenRequest(10)
+                .expectNext(10)
+                .verifyComplete();
+        assertEquals(9, overflowStage.metrics().getDropped());
+    }
+
+    @Test
+    void blockWithTimeout() {
+        // the producer waits for the slow consumer, nothing is dropped
+        OverflowStage<Integer> overflowStage = OverflowStage.blockWithTimeout(4, Duration.ofSeconds(5));
+        Flux<Integer> flux = Flux.range(1, 50)
+                .subscribeOn(Schedulers.boundedElastic())
+                .transform(overflowStage)
+                .delayElements(Duration.ofMillis(1));
+
+        StepVerifier.create(flux)
+                .expectNextCount(50)
+                .verifyComplete();
+        assertEquals(0, overflowStage.metrics().getDropped());
+        assertTrue(overflowStage.metrics().getMaxBuffered() <= 4);
+    }
+
+    @Test
+    void blockWithTimeout_timesOut() {
+        OverflowStage<Integer> overflowStage = OverflowStage.blockWithTimeout(2, Duration.ofMillis(50));
+        TestPublisher<Integer> producer = TestPublisher.create();
+        StepVerifier.create(producer.flux().transform(overflowStage), 0)
+                .then(() -> producer.next(1, 2, 3)) // the third one blocks for 50ms and then fails
+                .expectErrorMatches(Exceptions::isOverflow)
+                .verify(Duration.ofSeconds(5));
+    }
+
+    @Test
+    void of_block() {
+        assertThrows(IllegalArgumentException.class, () -> OverflowStage.of(OverflowPolicy.BLOCK, 3));
+    }
+
+    /*
+     A producer 100 times faster than the consumer for 10 (virtual) seconds: 10000 ticks, about 100 consumed.
+     Checks the buffered count, never more than the capacity of 16 whatever the policy, and the drops; not the heap.
+     */
+    @Test
+    void intervalFlux_overflow_bufferedStaysWithinCapacity() {
+        for (OverflowPolicy policy : List.of(OverflowPolicy.DROP_OLDEST, OverflowPolicy.DROP_LATEST, OverflowPolicy.LATEST_ONLY)) {
+            OverflowStage<Long> overflowStage = OverflowStage.of(policy, 16);
+            AtomicLong maxBuffered = new AtomicLong();
+
+            StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of(), Schedulers.parallel(), DelayModel.fixed(Duration.ZERO))
+                            .intervalFlux_overflow(overflowStage, Duration.ofMillis(1), Duration.ofMillis(100))
+                            .doOnNext(tick -> maxBuffered.accumulateAndGet(overflowStage.metrics().getBuffered(), Math::max))
+                            .take(Duration.ofSeconds(10)))
+                    .thenAwait(Duration.ofSeconds(10))
+                    .expectNextCount(99)
+                    .verifyComplete();
+
+            OverflowMetrics metrics = overflowStage.metrics();
+            assertTrue(maxBuffered.get() <= 16, policy + " " + metrics);
+            assertTrue(metrics.getMaxBuffered() <= 16, policy + " " + metrics);
+            assertTrue(metrics.getDropped() > 9000, policy + " " + metrics);
+        }
+    }
+
+    @Test
+    void namesFlux_overflow() {
+        OverflowStage<String> overflowStage = OverflowStage.of(OverflowPolicy.DROP_LATEST, 1);
+        StepVerifier.withVirtualTime(() -> new FluxAndMonoGeneratorService(List.of("alex", "ben", "chloe", "dan", "emily"),
+                        Schedulers.parallel(), DelayModel.fixed(Duration.ofSeconds(1)))
+                        .namesFlux_overflow(overflowStage))
+                .thenAwait(Duration.ofSeconds(20))
+                // ALEX is being split, BEN is prefetched by concatMap, CHLOE waits in the buffer of 1, DAN and EMILY are dropped
+                .expectNext("A", "L", "E", "X", "B", "E", "N", "C", "H", "L", "O", "E")
+                .verifyComplete();
+        assertEquals(2, overflowStage.metrics().getDropped());
+    }
+}
@@ -0,0 +1,130 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SignalTracerTest {
+
+    SignalTracer tracer = new SignalTracer(16);
+
+    List<SignalType> types(List<SignalTracer.Event> events) {
+        return events.stream().map(SignalTracer.Event::getType).collect(Collectors.toList());
+    }
+
+    @Test
+    void disabled() {
+        StepVerifier.create(Flux.just("A", "B", "C").transform(tracer.traceFlux("disabled")))
+                .expectNext("A", "B", "C")
+                .verifyComplete();
+        assertTrue(tracer.drain().isEmpty());
+    }
+
+    @Test
+    void everySignal() {
+        tracer.setEnabled(true);
+        tracer.setSampleEvery(1);
+        StepVerifier.create(Flux.just("A", "B", "C").transform(tracer.traceFlux("everySignal")))
+                .expectNext("A", "B", "C")
+                .verifyComplete();
+
+        List<SignalTracer.Event> events = tracer.drain();
+        assertEquals(List.of(SignalType.ON_SUBSCRIBE, SignalType.REQUEST, SignalType.ON_NEXT, SignalType.ON_NEXT,
+                SignalType.ON_NEXT, SignalType.ON_COMPLETE), types(events));
+        assertEquals("B", events.get(3).getDetail());
+        assertEquals(3, events.get(5).getValue());
+        assertEquals("everySignal", events.get(0).getName());
+    }
+
+    @Test
+    void sampled() {
+        tracer.setEnabled(true);
+        tracer.setSampleEvery(4);
+        StepVerifier.create(Flux.range(0, 10).transform(tracer.traceFlux("sampled")))
+                .expectNextCount(10)
+                .verifyComplete();
+
+        List<Object> sampled = tracer.drain().stream()
+                .filter(event -> event.getType() == SignalType.ON_NEXT)
+                .map(SignalTracer.Event::getDetail)
+                .collect(Collectors.toList());
+        assertEquals(List.of(0, 4, 8), sampled);
+    }
+
+    @Test
+    void slowOnly() {
+        tracer.setEnabled(true);
+        tracer.setSampleEvery(0);
+        tracer.setSlowThreshold(Duration.ofMillis(20));
+        Flux<Integer> flux = Flux.range(0, 3)
+                .transform(tracer.traceFlux("slowOnly"))
+                .doOnNext(i -> {
+                    if (i == 1) {
+                        sleep(30);
+                    }
+                });
+
+        StepVerifier.create(flux)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        List<Object> slow = tracer.drain().stream()
+                .filter(event -> event.getType() == SignalType.ON_NEXT)
+                .map(SignalTracer.Event::getDetail)
+                .collect(Collectors.toList());
+        assertEquals(List.of(1), slow);
+    }
+
+    @Test
+    void cancel() {
+        tracer.setEnabled(true);
+        StepVerifier.create(Flux.range(0, 10).transform(tracer.traceFlux("cancel")), 2)
+                .expectNext(0, 1)
+                .thenCancel()
+                .verify();
+
+        List<SignalTracer.Event> events = tracer.drain();
+        SignalTracer.Event cancel = events.get(events.size() - 1);
+        assertEquals(SignalType.CANCEL, cancel.getType());
+        assertEquals(2, cancel.getValue());
+    }
+
+    @Test
+    void mono() {
+        tracer.setEnabled(true);
+        StepVerifier.create(Mono.just("alex").transform(tracer.traceMono("mono")))
+                .expectNext("alex")
+                .verifyComplete();
+        assertEquals(SignalType.ON_COMPLETE, types(tracer.drain()).get(3));
+    }
+
+    @Test
+    void ringOverwritesOldest() {
+        tracer.setEnabled(true);
+        tracer.setSampleEvery(1);
+        StepVerifier.create(Flux.range(0, 100).transform(tracer.traceFlux("ring")))
+                .expectNextCount(100)
+                .verifyComplete();
+
+        List<SignalTracer.Event> events = tracer.drain();
+        assertEquals(16, events.size());
+        assertEquals(SignalType.ON_COMPLETE, events.get(15).getType());
+        assertEquals(103 - 16, tracer.getLost());
+    }
+
+    static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.learnreactiveprogramming.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StageMetricsTest {
+
+    StageMetrics metrics = new StageMetrics();
+
+    @Test
+    void disabled() {
+        StepVerifier.create(Flux.range(1, 3).transform(metrics.stageFlux("range")))
+                .expectNext(1, 2, 3)
+                .verifyComplete();
+        assertTrue(metrics.stages().isEmpty());
+    }
+
+    @Test
+    void stage_requestsAndSignals() {
+        metrics.setEnabled(true);
+        StepVerifier.create(Flux.range(1, 10).transform(metrics.stageFlux("range")), 0)
+                .thenRequest(3)
+                .expectNextCount(3)
+                .thenRequest(7)
+                .expectNextCount(7)
+                .verifyComplete();
+
+        StageMetrics.Stage stage = metrics.get("range");
+        assertEquals(1, stage.getSubscriptions());
+        assertEquals(10, stage.getOnNextCount());
+        assertEquals(2, stage.getRequests());
+        assertEquals(10, stage.getDemand());
+        assertEquals(0, stage.getUnboundedRequests());
+        assertEquals(1, stage.getCompletes());
+        assertEquals(0.0, stage.getCancelRate());
+        assertTrue(metrics.report().contains("range"));
+    }
+
+    @Test
+    void stage_cancel() {
+        metrics.setEnabled(true);
+        for (int i = 0; i < 4; i++) {
+            Flux<Integer> flux = Flux.range(1, 10).transform(metrics.stageFlux("range"));
+            StepVerifier.create(i % 2 == 0 ? flux.take(2) : flux)
+                    .expectNextCount(i % 2 == 0 ? 2 : 10)
+                    .verifyComplete();
+        }
+
+        StageMetrics.Stage stage = metrics.get("range");
+        assertEquals(4, stage.getSubscriptions());
+        assertEquals(2, stage.getCancels());
+        assertEquals(0.5, stage.getCancelRate());
+        assertEquals(2, stage.getErrors() + stage.getCompletes());
+    }
+
+    @Test
+    void stage_latency() {
+        metrics.setEnabled(true);
+        Flux<Integer> slowDownstream = Flux.range(1, 3)
+                .transform(metrics.stageFlux("range"))
+                .doOnNext(i -> sleep(Duration.ofMillis(5)));
+        StepVerifier.create(slowDownstream)
+                .expectNextCount(3)
+                .verifyComplete();
+
+        StageMetrics.Stage stage = metrics.get("range");
+        assertTrue(stage.getOnNextLatency().getMinValue() >= TimeUnit.MILLISECONDS.toNanos(4));
+        // the first interval is from the request to the first element
+        assertEquals(3, stage.getOnNextInterval().getTotalCount());
+    }
+
+    @Test
+    void installOnEachOperator() {
+        metrics.setEnabled(true);
+        metrics.installOnEachOperator();
+        try {
+            StepVerifier.create(Flux.range(1, 10)
+                            .map(i -> i * 2)
+                            .filter(i -> i > 10))
+                    .expectNextCount(5)
+                    .verifyComplete();
+        } finally {
+            StageMetrics.uninstallOnEachOperator();
+        }
+
+        assertEquals(10, metrics.get("map").getOnNextCount());
+        assertEquals(5, metrics.get("filter").getOnNextCount());
+        // filter asks for one more name every time it drops one
+        assertEquals(6, metrics.get("map").getRequests());
+    }
+
+    @Test
+    void service_pipelines() {
+        StageMetrics global = StageMetrics.global();
+        global.reset();
+        global.setEnabled(true);
+        try {
+            StepVerifier.create(new FluxAndMonoGeneratorService().namesFlux_filter(3))
+                    .expectNext("4-alex", "5-chloe")
+                    .verifyComplete();
+        } finally {
+            global.setEnabled(false);
+        }
+
+        assertEquals(2, global.get("namesFlux_filter").getOnNextCount());
+        assertEquals(1, global.get("namesFlux_filter").getUnboundedRequests());
+    }
+
+    static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}